@@ -15,3 +15,13 @@
 #-keepclassmembers class fqcn.of.javascript.interface.for.webview {
 #   public *;
 #}
+
+# Journal compaction and the admission filter reach these through reflection
+-keepclassmembers class com.jakewharton.disklrucache.DiskLruCache {
+    private void rebuildJournal();
+    private int redundantOpCount;
+    private final java.util.LinkedHashMap lruEntries;
+}
+
+# ValueType reads the type argument of its anonymous subclasses
+-keepattributes Signature
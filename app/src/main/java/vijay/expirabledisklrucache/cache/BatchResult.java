@@ -0,0 +1,32 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of a multi key get. Keys without an unexpired entry are in neither map.
+ */
+public final class BatchResult<T> {
+
+    private final Map<String, T>         mValues;
+    private final Map<String, Exception> mFailures;
+
+    BatchResult(Map<String, T> values, Map<String, Exception> failures) {
+        mValues = Collections.unmodifiableMap(values);
+        mFailures = Collections.unmodifiableMap(failures);
+    }
+
+    /** Values found, by key. */
+    public Map<String, T> getValues() {
+        return mValues;
+    }
+
+    /** Keys that could not be read, with the reason. */
+    public Map<String, Exception> getFailures() {
+        return mFailures;
+    }
+
+    public boolean hasFailures() {
+        return !mFailures.isEmpty();
+    }
+}
@@ -0,0 +1,84 @@
+package vijay.expirabledisklrucache.cache;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+/**
+ * Decodes cached images sampled down to the size they are displayed at, into bitmaps from a
+ * {@link BitmapPool} where the platform allows it.
+ */
+final class BitmapDecoder {
+
+    private BitmapDecoder() {
+    }
+
+    /**
+     * @param reqWidth 0 to decode at full size
+     * @param reqHeight 0 to decode at full size
+     * @param config null for the platform's default, ARGB_8888
+     * @param pool null to always allocate
+     * @return null if data isn't an image BitmapFactory can decode
+     */
+    static Bitmap decode(byte[] data, int reqWidth, int reqHeight, Bitmap.Config config, BitmapPool pool) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (config != null) {
+            options.inPreferredConfig = config;
+        }
+        boolean reuse = pool != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+        if ((reqWidth > 0 && reqHeight > 0) || reuse) {
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            options.inJustDecodeBounds = false;
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+            options.inSampleSize = sampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        }
+        if (reuse) {
+            options.inMutable = true;
+            options.inBitmap = reusable(options, pool);
+        }
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null) {
+                throw e;
+            }
+            // the decoder picked another config than the pooled bitmap's
+            options.inBitmap.recycle();
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+    }
+
+    /**
+     * @return the largest power of 2 that keeps the decoded image at least as large as requested
+     */
+    static int sampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Before KitKat a bitmap can only be decoded into if it has the image's exact size and the
+     * image isn't sampled. Since then any bitmap that is large enough will do, which includes
+     * one of the sampled size rounded up.
+     */
+    private static Bitmap reusable(BitmapFactory.Options options, BitmapPool pool) {
+        Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        int sampleSize = options.inSampleSize;
+        if (sampleSize > 1 && Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return null;
+        }
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        return pool.get(width, height, config);
+    }
+}
@@ -0,0 +1,149 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+
+/**
+ * Bitmaps that are no longer displayed, kept to be decoded into again instead of allocating new
+ * ones, see {@link ExpirableDiskLruCache#getBitmap(String, int, int, Bitmap.Config, BitmapPool)}.
+ * Bitmaps are keyed by width, height and config, which is what reuse needs before KitKat. Once
+ * the pool is over its size the bitmaps put longest ago are recycled.
+ *
+ * Thread safe.
+ */
+public final class BitmapPool {
+
+    private final long                             mMaxSize;
+    private long                                   mSize;
+    private final Map<Key, ArrayDeque<Bitmap>>     mBitmaps = new HashMap<>();
+    /** Bitmaps in the order they were put, oldest first. */
+    private final LinkedHashSet<Bitmap>            mOrder   = new LinkedHashSet<>();
+    private long                                   mHitCount;
+    private long                                   mMissCount;
+
+    /**
+     * @param maxSizeBytes total size of the pooled bitmaps, a few screens worth of them
+     */
+    public BitmapPool(long maxSizeBytes) {
+        if (maxSizeBytes <= 0) {
+            throw new IllegalArgumentException("maxSizeBytes must be positive");
+        }
+        mMaxSize = maxSizeBytes;
+    }
+
+    /**
+     * Offers bitmap for reuse. The caller must not touch it afterwards. Immutable, recycled and
+     * oversized bitmaps are recycled right away.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (mOrder.contains(bitmap)) {
+            return;
+        }
+        long size = sizeOf(bitmap);
+        if (bitmap.isRecycled() || !bitmap.isMutable() || size > mMaxSize) {
+            bitmap.recycle();
+            return;
+        }
+        Key key = new Key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> bitmaps = mBitmaps.get(key);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            mBitmaps.put(key, bitmaps);
+        }
+        bitmaps.push(bitmap);
+        mOrder.add(bitmap);
+        mSize += size;
+        trim();
+    }
+
+    /**
+     * @return a pooled bitmap of exactly this size and config, no longer in the pool, or null
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        ArrayDeque<Bitmap> bitmaps = mBitmaps.get(new Key(width, height, config));
+        Bitmap bitmap = bitmaps == null ? null : bitmaps.poll();
+        if (bitmap == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        mOrder.remove(bitmap);
+        mSize -= sizeOf(bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Recycles every pooled bitmap.
+     */
+    public synchronized void clear() {
+        for (Bitmap bitmap : mOrder) {
+            bitmap.recycle();
+        }
+        mOrder.clear();
+        mBitmaps.clear();
+        mSize = 0;
+    }
+
+    /** Bytes held by the pooled bitmaps. */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /** Gets that found a bitmap to reuse. */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /** Gets that found none, so the bitmap was allocated. */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    private void trim() {
+        Iterator<Bitmap> oldest = mOrder.iterator();
+        while (mSize > mMaxSize && oldest.hasNext()) {
+            Bitmap bitmap = oldest.next();
+            oldest.remove();
+            mBitmaps.get(new Key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig())).remove(bitmap);
+            mSize -= sizeOf(bitmap);
+            bitmap.recycle();
+        }
+    }
+
+    private static long sizeOf(Bitmap bitmap) {
+        // getByteCount() needs api 12
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    private static final class Key {
+
+        private final int           mWidth;
+        private final int           mHeight;
+        private final Bitmap.Config mConfig;
+
+        Key(int width, int height, Bitmap.Config config) {
+            mWidth = width;
+            mHeight = height;
+            mConfig = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mWidth == other.mWidth && mHeight == other.mHeight && mConfig == other.mConfig;
+        }
+
+        @Override
+        public int hashCode() {
+            return (mWidth * 31 + mHeight) * 31 + (mConfig == null ? 0 : mConfig.hashCode());
+        }
+    }
+}
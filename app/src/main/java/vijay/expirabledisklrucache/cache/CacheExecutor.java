@@ -0,0 +1,75 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the asynchronous cache operations on a pool of its own, so they don't queue up behind
+ * unrelated work on the app wide AsyncTask executor.
+ *
+ * The queue is bounded, tasks submitted while it is full are rejected with a
+ * {@link RejectedExecutionException}. Idle threads time out. How long tasks waited in the queue
+ * is recorded for {@link ExecutorStats}.
+ */
+final class CacheExecutor extends ThreadPoolExecutor {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final AtomicLong  mExecutedCount     = new AtomicLong();
+    private final AtomicLong  mRejectedCount     = new AtomicLong();
+    private final AtomicLong  mTotalWaitNanos    = new AtomicLong();
+    private final AtomicLong  mMaxWaitNanos      = new AtomicLong();
+
+    CacheExecutor(int poolSize, int queueCapacity, int threadPriority) {
+        super(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new CacheThreadFactory("pool", threadPriority, false));
+        setRejectedExecutionHandler(new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                mRejectedCount.incrementAndGet();
+                throw new RejectedExecutionException("Cache executor queue is full");
+            }
+        });
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new QueuedTask(command));
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        long wait = System.nanoTime() - ((QueuedTask) r).mEnqueuedAt;
+        mExecutedCount.incrementAndGet();
+        mTotalWaitNanos.addAndGet(wait);
+        long max;
+        do {
+            max = mMaxWaitNanos.get();
+        } while (wait > max && !mMaxWaitNanos.compareAndSet(max, wait));
+    }
+
+    ExecutorStats stats() {
+        return new ExecutorStats(getQueue().size(), getActiveCount(), mExecutedCount.get(), mRejectedCount.get(),
+                mTotalWaitNanos.get(), mMaxWaitNanos.get());
+    }
+
+    private static final class QueuedTask implements Runnable {
+        final Runnable mTask;
+        final long     mEnqueuedAt = System.nanoTime();
+
+        QueuedTask(Runnable task) {
+            mTask = task;
+        }
+
+        @Override
+        public void run() {
+            mTask.run();
+        }
+    }
+}
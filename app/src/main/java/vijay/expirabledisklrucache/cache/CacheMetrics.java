@@ -0,0 +1,66 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free counters and latency histograms behind {@link CacheStats}. Recording costs a few
+ * atomic increments, so it is always on.
+ */
+final class CacheMetrics {
+
+    private final AtomicLong mHitCount        = new AtomicLong();
+    private final AtomicLong mMissCount       = new AtomicLong();
+    private final AtomicLong mExpirationCount = new AtomicLong();
+    private final AtomicLong mPutCount        = new AtomicLong();
+    private final AtomicLong mRemoveCount     = new AtomicLong();
+    private final AtomicLong mEvictionCount   = new AtomicLong();
+    private final AtomicLong mEvictedBytes    = new AtomicLong();
+    private final AtomicLong mBytesRead       = new AtomicLong();
+    private final AtomicLong mBytesWritten    = new AtomicLong();
+    private final AtomicLong mRejectionCount  = new AtomicLong();
+
+    final LatencyRecorder    mGetLatency      = new LatencyRecorder();
+    final LatencyRecorder    mPutLatency      = new LatencyRecorder();
+    final LatencyRecorder    mRemoveLatency   = new LatencyRecorder();
+
+    void recordHit() {
+        mHitCount.incrementAndGet();
+    }
+
+    void recordMiss() {
+        mMissCount.incrementAndGet();
+    }
+
+    void recordExpiration() {
+        mExpirationCount.incrementAndGet();
+    }
+
+    void recordRemove() {
+        mRemoveCount.incrementAndGet();
+    }
+
+    void recordRead(long bytes) {
+        mBytesRead.addAndGet(bytes);
+    }
+
+    void recordWrite(long bytes) {
+        mPutCount.incrementAndGet();
+        mBytesWritten.addAndGet(bytes);
+    }
+
+    void recordRejection() {
+        mRejectionCount.incrementAndGet();
+    }
+
+    void recordEviction(int entries, long bytes) {
+        mEvictionCount.addAndGet(entries);
+        mEvictedBytes.addAndGet(bytes);
+    }
+
+    CacheStats snapshot() {
+        return new CacheStats(mHitCount.get(), mMissCount.get(), mExpirationCount.get(), mPutCount.get(),
+                mRemoveCount.get(), mEvictionCount.get(), mEvictedBytes.get(), mBytesRead.get(),
+                mBytesWritten.get(), mRejectionCount.get(), mGetLatency.snapshot(), mPutLatency.snapshot(),
+                mRemoveLatency.snapshot());
+    }
+}
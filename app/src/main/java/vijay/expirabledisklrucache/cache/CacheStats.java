@@ -0,0 +1,125 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * Snapshot of the cache's counters and operation latencies since it was initialized. Counters are
+ * read one by one while operations go on, so they may be off by the operations in flight.
+ */
+public final class CacheStats {
+
+    private final long             mHitCount;
+    private final long             mMissCount;
+    private final long             mExpirationCount;
+    private final long             mPutCount;
+    private final long             mRemoveCount;
+    private final long             mEvictionCount;
+    private final long             mEvictedBytes;
+    private final long             mBytesRead;
+    private final long             mBytesWritten;
+    private final long             mRejectionCount;
+    private final LatencyHistogram mGetLatency;
+    private final LatencyHistogram mPutLatency;
+    private final LatencyHistogram mRemoveLatency;
+
+    CacheStats(long hitCount, long missCount, long expirationCount, long putCount, long removeCount,
+            long evictionCount, long evictedBytes, long bytesRead, long bytesWritten, long rejectionCount,
+            LatencyHistogram getLatency, LatencyHistogram putLatency, LatencyHistogram removeLatency) {
+        mHitCount = hitCount;
+        mMissCount = missCount;
+        mExpirationCount = expirationCount;
+        mPutCount = putCount;
+        mRemoveCount = removeCount;
+        mEvictionCount = evictionCount;
+        mEvictedBytes = evictedBytes;
+        mBytesRead = bytesRead;
+        mBytesWritten = bytesWritten;
+        mRejectionCount = rejectionCount;
+        mGetLatency = getLatency;
+        mPutLatency = putLatency;
+        mRemoveLatency = removeLatency;
+    }
+
+    /** Reads that found an unexpired value, in memory or on disk. */
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    /** Reads that found no value, or an expired one. */
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    public double getHitRate() {
+        long requests = mHitCount + mMissCount;
+        return requests == 0 ? 0 : (double) mHitCount / requests;
+    }
+
+    /** Expired entries removed, when read or by the sweeper. */
+    public long getExpirationCount() {
+        return mExpirationCount;
+    }
+
+    /** Entries written. */
+    public long getPutCount() {
+        return mPutCount;
+    }
+
+    /** Entries removed on request, not counting those cleared by removeAll(). */
+    public long getRemoveCount() {
+        return mRemoveCount;
+    }
+
+    /**
+     * Least recently used entries evicted to bring the cache back under its size. 0 if the
+     * DiskLruCache version in use doesn't expose its entries, see {@link #getEvictedBytes()}.
+     */
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /** Size on disk of the evicted entries. */
+    public long getEvictedBytes() {
+        return mEvictedBytes;
+    }
+
+    /** Size of the values read from disk, before decrypting and decompressing. */
+    public long getBytesRead() {
+        return mBytesRead;
+    }
+
+    /** Size of the values written to disk, after compressing and encrypting. */
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    /**
+     * Puts turned away by the admission filter or for exceeding the maximum entry size, not counted
+     * as puts.
+     */
+    public long getRejectionCount() {
+        return mRejectionCount;
+    }
+
+    /** Latency of gets, per key for {@code getAll}. */
+    public LatencyHistogram getGetLatency() {
+        return mGetLatency;
+    }
+
+    /** Latency of puts, per key for {@code putAll}. */
+    public LatencyHistogram getPutLatency() {
+        return mPutLatency;
+    }
+
+    /** Latency of removes, per key for {@code removeAll(keys)}. */
+    public LatencyHistogram getRemoveLatency() {
+        return mRemoveLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + mHitCount + ", misses=" + mMissCount + ", expirations=" + mExpirationCount
+                + ", puts=" + mPutCount + ", removes=" + mRemoveCount + ", evictions=" + mEvictionCount
+                + ", evictedBytes=" + mEvictedBytes + ", bytesRead=" + mBytesRead + ", bytesWritten="
+                + mBytesWritten + ", rejections=" + mRejectionCount + ", get=" + mGetLatency + ", put="
+                + mPutLatency + ", remove=" + mRemoveLatency + "}";
+    }
+}
@@ -0,0 +1,41 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.Process;
+
+/**
+ * Creates the threads the cache runs its own work on, named "ExpirableDiskLruCache-name-n" and
+ * running at the given Android thread priority.
+ */
+final class CacheThreadFactory implements ThreadFactory {
+
+    private final String        mName;
+    private final int           mThreadPriority;
+    private final boolean       mDaemon;
+    private final AtomicInteger mCount = new AtomicInteger();
+
+    /**
+     * @param daemon whether the threads may be left running when the process exits, for
+     *            housekeeping that doesn't need to finish
+     */
+    CacheThreadFactory(String name, int threadPriority, boolean daemon) {
+        mName = name;
+        mThreadPriority = threadPriority;
+        mDaemon = daemon;
+    }
+
+    @Override
+    public Thread newThread(final Runnable r) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(mThreadPriority);
+                r.run();
+            }
+        }, "ExpirableDiskLruCache-" + mName + "-" + mCount.incrementAndGet());
+        thread.setDaemon(mDaemon);
+        return thread;
+    }
+}
@@ -0,0 +1,26 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * The wall clock entries expire and refresh by. Tests replace it to move time on without sleeping.
+ */
+abstract class Clock {
+
+    static final Clock            SYSTEM = new Clock() {
+        @Override
+        long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private static volatile Clock sClock = SYSTEM;
+
+    abstract long currentTimeMillis();
+
+    static long now() {
+        return sClock.currentTimeMillis();
+    }
+
+    static void set(Clock clock) {
+        sClock = clock;
+    }
+}
@@ -0,0 +1,165 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import vijay.expirabledisklrucache.cache.compression.Compressor;
+import vijay.expirabledisklrucache.cache.compression.DeflateCompressor;
+import vijay.expirabledisklrucache.cache.compression.Lz4Compressor;
+
+/**
+ * Compresses serialized values on their way to disk and decompresses them on the way back,
+ * counting bytes and time for {@link CompressionStats}.
+ *
+ * Values smaller than the threshold, and values that don't get smaller, are stored as they are.
+ */
+final class CompressionStage {
+
+    private volatile Compressor[] mCompressors         = new Compressor[128];
+    private volatile Compressor   mCompressor;
+    private volatile int          mThreshold;
+
+    private final AtomicLong      mCompressedCount     = new AtomicLong();
+    private final AtomicLong      mStoredCount         = new AtomicLong();
+    private final AtomicLong      mInputBytes          = new AtomicLong();
+    private final AtomicLong      mOutputBytes         = new AtomicLong();
+    private final AtomicLong      mCompressNanos       = new AtomicLong();
+    private final AtomicLong      mDecompressedCount   = new AtomicLong();
+    private final AtomicLong      mDecompressNanos     = new AtomicLong();
+
+    CompressionStage() {
+        register(new DeflateCompressor());
+        register(new Lz4Compressor());
+    }
+
+    synchronized void register(Compressor compressor) {
+        int id = checkId(compressor);
+        Compressor[] compressors = mCompressors.clone();
+        compressors[id] = compressor;
+        mCompressors = compressors;
+    }
+
+    /**
+     * @return the id of compressor
+     * @throws IllegalArgumentException if it can't be stored in entry metadata
+     */
+    private static int checkId(Compressor compressor) {
+        int id = compressor.getId();
+        if (id <= 0) {
+            throw new IllegalArgumentException("Compressor ids must be between 1 and 127, got " + id);
+        }
+        return id;
+    }
+
+    /**
+     * @param compressor null to store values uncompressed
+     */
+    void configure(Compressor compressor, int threshold) {
+        if (compressor != null && mCompressors[checkId(compressor)] != compressor) {
+            register(compressor);
+        }
+        mThreshold = threshold;
+        mCompressor = compressor;
+    }
+
+    boolean isEnabled() {
+        return mCompressor != null;
+    }
+
+    /**
+     * @return whether a value of length bytes should go through {@link #compress}
+     */
+    boolean accepts(int length) {
+        return mCompressor != null && length >= mThreshold;
+    }
+
+    /**
+     * @return the compressed bytes, or null if the value should be stored as it is. The compressor
+     *         used is set on metadata.
+     */
+    byte[] compress(byte[] value, int offset, int length, EntryMetadata metadata) throws IOException {
+        Compressor compressor = mCompressor;
+        if (compressor == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        byte[] compressed = compressor.compress(value, offset, length);
+        mCompressNanos.addAndGet(System.nanoTime() - start);
+        mInputBytes.addAndGet(length);
+        if (compressed.length >= length) {
+            mOutputBytes.addAndGet(length);
+            mStoredCount.incrementAndGet();
+            return null;
+        }
+        mOutputBytes.addAndGet(compressed.length);
+        mCompressedCount.incrementAndGet();
+        metadata.setCompressorId(compressor.getId());
+        return compressed;
+    }
+
+    /**
+     * @return in, decompressed if the entry was compressed
+     */
+    InputStream decompress(InputStream in, EntryMetadata metadata) throws IOException {
+        int id = metadata.getCompressorId();
+        if (id == EntryMetadata.COMPRESSOR_NONE) {
+            return in;
+        }
+        Compressor compressor = id > 0 ? mCompressors[id] : null;
+        if (compressor == null) {
+            throw new IOException("No compressor registered for id " + id);
+        }
+        mDecompressedCount.incrementAndGet();
+        long start = System.nanoTime();
+        InputStream decompressed = compressor.decompress(in);
+        mDecompressNanos.addAndGet(System.nanoTime() - start);
+        return new TimedInputStream(decompressed);
+    }
+
+    CompressionStats stats() {
+        return new CompressionStats(mCompressedCount.get(), mStoredCount.get(), mInputBytes.get(),
+                mOutputBytes.get(), mCompressNanos.get(), mDecompressedCount.get(), mDecompressNanos.get());
+    }
+
+    /**
+     * Adds the time spent reading from the decompressing stream, which is where the work happens.
+     */
+    private final class TimedInputStream extends InputStream {
+        private final InputStream mIn;
+
+        TimedInputStream(InputStream in) {
+            mIn = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return mIn.read();
+            } finally {
+                mDecompressNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return mIn.read(b, off, len);
+            } finally {
+                mDecompressNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            return mIn.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mIn.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * Snapshot of the compression stage's counters. Values below the threshold are not counted.
+ */
+public final class CompressionStats {
+
+    private final long mCompressedCount;
+    private final long mStoredCount;
+    private final long mInputBytes;
+    private final long mOutputBytes;
+    private final long mCompressTimeNanos;
+    private final long mDecompressedCount;
+    private final long mDecompressTimeNanos;
+
+    CompressionStats(long compressedCount, long storedCount, long inputBytes, long outputBytes,
+            long compressTimeNanos, long decompressedCount, long decompressTimeNanos) {
+        mCompressedCount = compressedCount;
+        mStoredCount = storedCount;
+        mInputBytes = inputBytes;
+        mOutputBytes = outputBytes;
+        mCompressTimeNanos = compressTimeNanos;
+        mDecompressedCount = decompressedCount;
+        mDecompressTimeNanos = decompressTimeNanos;
+    }
+
+    /** Values written compressed. */
+    public long getCompressedCount() {
+        return mCompressedCount;
+    }
+
+    /** Values written uncompressed because compressing didn't make them smaller. */
+    public long getStoredCount() {
+        return mStoredCount;
+    }
+
+    /** Size of the values before compression. */
+    public long getInputBytes() {
+        return mInputBytes;
+    }
+
+    /** Size of the values as written. */
+    public long getOutputBytes() {
+        return mOutputBytes;
+    }
+
+    /**
+     * How many times more values fit in the cache than without compression, for the values that
+     * went through the compressor.
+     */
+    public double getCompressionRatio() {
+        return mOutputBytes == 0 ? 1 : (double) mInputBytes / mOutputBytes;
+    }
+
+    public long getCompressTimeNanos() {
+        return mCompressTimeNanos;
+    }
+
+    /** Compressed values read back. */
+    public long getDecompressedCount() {
+        return mDecompressedCount;
+    }
+
+    public long getDecompressTimeNanos() {
+        return mDecompressTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{compressed=" + mCompressedCount + ", stored=" + mStoredCount + ", inputBytes="
+                + mInputBytes + ", outputBytes=" + mOutputBytes + ", compressTimeNanos=" + mCompressTimeNanos
+                + ", decompressed=" + mDecompressedCount + ", decompressTimeNanos=" + mDecompressTimeNanos + "}";
+    }
+}
@@ -0,0 +1,373 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamConstants;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import vijay.expirabledisklrucache.cache.utils.ByteArrayDataInput;
+import vijay.expirabledisklrucache.cache.utils.ByteArrayDataOutput;
+import vijay.expirabledisklrucache.cache.utils.ByteStreams;
+import vijay.expirabledisklrucache.cache.utils.Closeables;
+
+/**
+ * Per entry header stored in the metadata file of a cache entry.
+ *
+ * Layout (version 2, big endian):
+ *
+ * <pre>
+ * short  magic (0xED1C)
+ * byte   version
+ * byte   flags
+ * byte   codec id
+ * byte   compressor id (not in version 1)
+ * long   eviction time
+ * long   created at
+ * long   value length
+ * short  extras count
+ * extras (utf name, byte type, value)*
+ * </pre>
+ *
+ * Entries written before this header existed hold a java serialized
+ * {@code HashMap<String, Serializable>}. Those are still decoded, see {@link #decodeLegacy(byte[])}.
+ */
+final class EntryMetadata {
+
+    static final int            MAGIC             = 0xED1C;
+    static final int            VERSION           = 2;
+    static final int            VERSION_1         = 1;
+    static final int            LEGACY_VERSION    = 0;
+
+    /** Value bytes were encrypted before being written. */
+    static final int            FLAG_ENCRYPTED    = 1;
+
+    /** Codec was not recorded. Every entry written before codecs existed is json. */
+    static final byte           CODEC_UNSPECIFIED = 0;
+
+    /** Value bytes were put as they are, without a serializer. */
+    static final byte           CODEC_RAW         = 3;
+
+    /** Value bytes were not compressed. */
+    static final byte           COMPRESSOR_NONE   = 0;
+
+    static final long           UNKNOWN           = -1;
+
+    /** Extra holding the evictionTimeSpan of entries whose eviction time slides on every read. */
+    static final String         EXTRA_EXPIRE_AFTER_ACCESS = "expireAfterAccess";
+
+    /** Extra holding the evictionTimeSpan of entries whose eviction time is fixed. */
+    static final String         EXTRA_TIME_SPAN   = "timeSpan";
+
+    /**
+     * Extra holding the serialized length of values, before compression and encryption, which is
+     * what the memory cache sizes them by.
+     */
+    static final String         EXTRA_SERIALIZED_LENGTH = "serializedLength";
+
+    /** Key used by the legacy serialized map for the eviction time. */
+    static final String         LEGACY_EVICTION_TIME = "EVICTION_TIME";
+
+    private static final int    FIXED_SIZE        = 2 + 1 + 1 + 1 + 1 + 8 + 8 + 8 + 2;
+    private static final int    FIXED_SIZE_V1     = FIXED_SIZE - 1;
+
+    private static final byte   TYPE_LONG         = 1;
+    private static final byte   TYPE_INT          = 2;
+    private static final byte   TYPE_BOOLEAN      = 3;
+    private static final byte   TYPE_STRING       = 4;
+    private static final byte   TYPE_BYTES        = 5;
+
+    private int                 mVersion          = VERSION;
+    private int                 mFlags;
+    private byte                mCodecId          = CODEC_UNSPECIFIED;
+    private byte                mCompressorId     = COMPRESSOR_NONE;
+    private long                mEvictionTime     = Long.MAX_VALUE;
+    private long                mCreatedAt        = UNKNOWN;
+    private long                mValueLength      = UNKNOWN;
+    private Map<String, Object> mExtras;
+
+    EntryMetadata() {
+    }
+
+    EntryMetadata(long evictionTime) {
+        mEvictionTime = evictionTime;
+        mCreatedAt = Clock.now();
+    }
+
+    int getVersion() {
+        return mVersion;
+    }
+
+    boolean isLegacy() {
+        return mVersion == LEGACY_VERSION;
+    }
+
+    int getFlags() {
+        return mFlags;
+    }
+
+    boolean hasFlag(int flag) {
+        return (mFlags & flag) != 0;
+    }
+
+    void setFlag(int flag, boolean enabled) {
+        mFlags = enabled ? (mFlags | flag) : (mFlags & ~flag);
+    }
+
+    byte getCodecId() {
+        return mCodecId;
+    }
+
+    void setCodecId(byte codecId) {
+        mCodecId = codecId;
+    }
+
+    byte getCompressorId() {
+        return mCompressorId;
+    }
+
+    void setCompressorId(byte compressorId) {
+        mCompressorId = compressorId;
+    }
+
+    long getEvictionTime() {
+        return mEvictionTime;
+    }
+
+    void setEvictionTime(long evictionTime) {
+        mEvictionTime = evictionTime;
+    }
+
+    long getCreatedAt() {
+        return mCreatedAt;
+    }
+
+    void setCreatedAt(long createdAt) {
+        mCreatedAt = createdAt;
+    }
+
+    long getValueLength() {
+        return mValueLength;
+    }
+
+    void setValueLength(long valueLength) {
+        mValueLength = valueLength;
+    }
+
+    void putExtra(String name, long value) {
+        extras().put(name, value);
+    }
+
+    void putExtra(String name, int value) {
+        extras().put(name, value);
+    }
+
+    void putExtra(String name, boolean value) {
+        extras().put(name, value);
+    }
+
+    void putExtra(String name, String value) {
+        extras().put(name, value);
+    }
+
+    void putExtra(String name, byte[] value) {
+        extras().put(name, value);
+    }
+
+    Object getExtra(String name) {
+        return mExtras == null ? null : mExtras.get(name);
+    }
+
+    long getLongExtra(String name, long defaultValue) {
+        Object value = getExtra(name);
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    /**
+     * @return how far each read pushes the eviction time out, 0 if it is fixed at write time
+     */
+    long getExpireAfterAccess() {
+        return getLongExtra(EXTRA_EXPIRE_AFTER_ACCESS, 0);
+    }
+
+    /**
+     * @return the evictionTimeSpan the entry was put with, or {@link #UNKNOWN}. For entries written
+     *         before it was recorded, the time from creation to eviction.
+     */
+    long getTimeSpan() {
+        long expireAfterAccess = getExpireAfterAccess();
+        if (expireAfterAccess > 0) {
+            return expireAfterAccess;
+        }
+        long timeSpan = getLongExtra(EXTRA_TIME_SPAN, UNKNOWN);
+        if (timeSpan != UNKNOWN || mCreatedAt == UNKNOWN || mEvictionTime <= mCreatedAt) {
+            return timeSpan;
+        }
+        return mEvictionTime - mCreatedAt;
+    }
+
+    Map<String, Object> getExtras() {
+        if (mExtras == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(mExtras);
+    }
+
+    private Map<String, Object> extras() {
+        if (mExtras == null) {
+            mExtras = new LinkedHashMap<>(2);
+        }
+        return mExtras;
+    }
+
+    byte[] encode() {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput(FIXED_SIZE);
+        try {
+            writeTo(out);
+        } catch (IOException e) {
+            // in memory output never throws
+            throw new AssertionError(e);
+        }
+        return out.toByteArray();
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeShort(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(mFlags);
+        out.writeByte(mCodecId);
+        out.writeByte(mCompressorId);
+        out.writeLong(mEvictionTime);
+        out.writeLong(mCreatedAt);
+        out.writeLong(mValueLength);
+        if (mExtras == null) {
+            out.writeShort(0);
+            return;
+        }
+        out.writeShort(mExtras.size());
+        for (Map.Entry<String, Object> extra : mExtras.entrySet()) {
+            out.writeUTF(extra.getKey());
+            writeExtra(out, extra.getValue());
+        }
+    }
+
+    private static void writeExtra(DataOutput out, Object value) throws IOException {
+        if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(TYPE_BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else {
+            throw new IllegalArgumentException("Unsupported extra type " + value.getClass());
+        }
+    }
+
+    private static Object readExtra(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case TYPE_LONG:
+            return in.readLong();
+        case TYPE_INT:
+            return in.readInt();
+        case TYPE_BOOLEAN:
+            return in.readBoolean();
+        case TYPE_STRING:
+            return in.readUTF();
+        case TYPE_BYTES:
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return bytes;
+        default:
+            throw new IOException("Unknown metadata extra type " + type);
+        }
+    }
+
+    static EntryMetadata decode(byte[] bytes) throws IOException {
+        if (bytes.length < 2) {
+            throw new IOException("Truncated metadata");
+        }
+        int magic = ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+        if (magic == (ObjectStreamConstants.STREAM_MAGIC & 0xFFFF)) {
+            return decodeLegacy(bytes);
+        }
+        if (magic != MAGIC || bytes.length < FIXED_SIZE_V1) {
+            throw new IOException("Corrupt metadata header");
+        }
+        try {
+            return readFrom(ByteStreams.newDataInput(bytes));
+        } catch (IllegalStateException e) {
+            // ByteArrayDataInput wraps EOF in an IllegalStateException
+            throw new IOException("Corrupt metadata header", e);
+        }
+    }
+
+    private static EntryMetadata readFrom(ByteArrayDataInput in) throws IOException {
+        in.readShort();
+        int version = in.readUnsignedByte();
+        if (version != VERSION && version != VERSION_1) {
+            throw new IOException("Unsupported metadata version " + version);
+        }
+        EntryMetadata metadata = new EntryMetadata();
+        metadata.mVersion = version;
+        metadata.mFlags = in.readUnsignedByte();
+        metadata.mCodecId = in.readByte();
+        if (version != VERSION_1) {
+            metadata.mCompressorId = in.readByte();
+        }
+        metadata.mEvictionTime = in.readLong();
+        metadata.mCreatedAt = in.readLong();
+        metadata.mValueLength = in.readLong();
+        int extras = in.readUnsignedShort();
+        for (int i = 0; i < extras; i++) {
+            String name = in.readUTF();
+            metadata.extras().put(name, readExtra(in));
+        }
+        return metadata;
+    }
+
+    /**
+     * Fallback decoder for metadata written with {@link java.io.ObjectOutputStream}. Values that
+     * are not representable as typed extras are dropped.
+     */
+    private static EntryMetadata decodeLegacy(byte[] bytes) throws IOException {
+        ObjectInputStream ois = null;
+        try {
+            ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            @SuppressWarnings("unchecked")
+            Map<String, Serializable> map = (Map<String, Serializable>) ois.readObject();
+            EntryMetadata metadata = new EntryMetadata();
+            metadata.mVersion = LEGACY_VERSION;
+            for (Map.Entry<String, Serializable> entry : map.entrySet()) {
+                Object value = entry.getValue();
+                if (LEGACY_EVICTION_TIME.equals(entry.getKey()) && value instanceof Long) {
+                    metadata.mEvictionTime = (Long) value;
+                } else if (value instanceof Long || value instanceof Integer || value instanceof Boolean
+                        || value instanceof String || value instanceof byte[]) {
+                    metadata.extras().put(entry.getKey(), value);
+                }
+            }
+            return metadata;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            Closeables.close(ois, true);
+        }
+    }
+}
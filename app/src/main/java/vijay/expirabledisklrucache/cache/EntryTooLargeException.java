@@ -0,0 +1,24 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a put whose value outgrew the maximum entry size, and the large entry store if one is
+ * enabled. The value is not written and the key's previous entry is removed.
+ */
+public class EntryTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long        mMaxSize;
+
+    EntryTooLargeException(String key, long maxSize) {
+        super("Entry " + key + " is larger than " + maxSize + " bytes");
+        mMaxSize = maxSize;
+    }
+
+    /** The limit the value exceeded, in bytes on disk. */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+}
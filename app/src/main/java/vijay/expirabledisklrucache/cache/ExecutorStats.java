@@ -0,0 +1,64 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * Snapshot of the counters of the executor running the asynchronous cache operations.
+ */
+public final class ExecutorStats {
+
+    private final int  mQueueDepth;
+    private final int  mActiveCount;
+    private final long mExecutedCount;
+    private final long mRejectedCount;
+    private final long mTotalWaitTimeNanos;
+    private final long mMaxWaitTimeNanos;
+
+    ExecutorStats(int queueDepth, int activeCount, long executedCount, long rejectedCount, long totalWaitTimeNanos,
+            long maxWaitTimeNanos) {
+        mQueueDepth = queueDepth;
+        mActiveCount = activeCount;
+        mExecutedCount = executedCount;
+        mRejectedCount = rejectedCount;
+        mTotalWaitTimeNanos = totalWaitTimeNanos;
+        mMaxWaitTimeNanos = maxWaitTimeNanos;
+    }
+
+    /** Operations waiting for a thread. */
+    public int getQueueDepth() {
+        return mQueueDepth;
+    }
+
+    /** Operations currently running. */
+    public int getActiveCount() {
+        return mActiveCount;
+    }
+
+    /** Operations that have started running. */
+    public long getExecutedCount() {
+        return mExecutedCount;
+    }
+
+    /** Operations rejected because the queue was full. */
+    public long getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    /** Time the started operations spent in the queue. */
+    public long getTotalWaitTimeNanos() {
+        return mTotalWaitTimeNanos;
+    }
+
+    public long getMaxWaitTimeNanos() {
+        return mMaxWaitTimeNanos;
+    }
+
+    public long getAverageWaitTimeNanos() {
+        return mExecutedCount == 0 ? 0 : mTotalWaitTimeNanos / mExecutedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutorStats{queueDepth=" + mQueueDepth + ", active=" + mActiveCount + ", executed="
+                + mExecutedCount + ", rejected=" + mRejectedCount + ", totalWaitTimeNanos=" + mTotalWaitTimeNanos
+                + ", maxWaitTimeNanos=" + mMaxWaitTimeNanos + "}";
+    }
+}
@@ -1,18 +1,53 @@
 package vijay.expirabledisklrucache.cache;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.Serializable;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import vijay.expirabledisklrucache.cache.compression.Compressor;
+import vijay.expirabledisklrucache.cache.compression.DeflateCompressor;
+import vijay.expirabledisklrucache.cache.compression.Lz4Compressor;
 import vijay.expirabledisklrucache.cache.security.EncrypterDecrypter;
 import vijay.expirabledisklrucache.cache.security.EncrypterDecrypterConcealImpl;
+import vijay.expirabledisklrucache.cache.security.StreamingEncrypterDecrypter;
+import vijay.expirabledisklrucache.cache.serializer.BinarySerializer;
+import vijay.expirabledisklrucache.cache.serializer.GsonSerializer;
+import vijay.expirabledisklrucache.cache.serializer.SchemaMismatchException;
+import vijay.expirabledisklrucache.cache.serializer.Serializer;
+import vijay.expirabledisklrucache.cache.serializer.ValueType;
+import vijay.expirabledisklrucache.cache.utils.ByteStreams;
+import vijay.expirabledisklrucache.cache.utils.Closeables;
+import vijay.expirabledisklrucache.cache.utils.Primitives;
 
 import android.content.Context;
-import android.os.AsyncTask;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
 
-import com.google.gson.Gson;
 
 /**
  * Created by vijay
@@ -21,148 +56,1720 @@ public class ExpirableDiskLruCache {
 
     private static final String LOG_TAG                    = "EXPIRABLE_DISK_CACHE";
 
-    private static final String EVICTION_TIME              = "EVICTION_TIME";
-
     private static final Long   DEFAULT_EVICTION_TIME_SPAN = 9999999999l;
     public static final String  UTF_8                      = "utf-8";
 
+    private static final int    DEFAULT_ASYNC_POOL_SIZE      = 2;
+    private static final int    DEFAULT_ASYNC_QUEUE_CAPACITY = 128;
+
+    /** Smaller values are cheaper to copy than to map. */
+    private static final long   MAPPED_READ_THRESHOLD      = 256 * 1024;
+
+    private static final String DIR_PREFIX                 = "expirable_disk_cache_";
+
     private static boolean      sLogEnabled                = false;
 
-    private SimpleDiskCache     mSimpleDiskCache;
+    private volatile SimpleDiskCache mSimpleDiskCache;
+
+    /** Set by initAsync until the cache is open, operations wait for it up to mReadyTimeoutMillis. */
+    private volatile FutureTask<Void> mOpening;
+
+    /**
+     * Guards publishing the cache initAsync opened against close(), which takes the opening away
+     * so the cache it opens is closed instead.
+     */
+    private final Object        mOpenLock                  = new Object();
+
+    private volatile long       mReadyTimeoutMillis;
+
+    private long                mEncryptionInitNanos;
+
+    private long                mDiskOpenNanos;
+
+    private final AtomicLong    mReadyWaitCount            = new AtomicLong();
+
+    private final AtomicLong    mReadyWaitNanos            = new AtomicLong();
 
     private EncrypterDecrypter  mEncrypterDecrypter;
 
-    private Gson                mGson;
+    private volatile Serializer mSerializer                = new GsonSerializer();
+
+    private volatile Serializer[] mSerializers             = new Serializer[128];
 
     private boolean             sEncryptionEnabled         = false;
 
+    private volatile MemoryCache mMemoryCache;
+
+    private ExpiredEntrySweeper mSweeper;
+
+    private JournalCompactor    mCompactor;
+
+    private CacheExecutor       mExecutor;
+
+    private KeyHasher           mKeyHasher                 = KeyHasher.MURMUR3;
+
+    private final CompressionStage mCompression            = new CompressionStage();
+
+    private volatile CacheMetrics mMetrics                 = new CacheMetrics();
+
+    private final SingleFlight  mLoads                     = new SingleFlight();
+
+    private final Set<String>   mRefreshing                = Collections.newSetFromMap(
+                                                                   new ConcurrentHashMap<String, Boolean>());
+
+    private volatile double     mRefreshAheadFraction;
+
+    private final AccessExpiry  mAccessExpiry              = new AccessExpiry();
+
+    private volatile Loader<?>  mRefreshLoader;
+
+    /** ValueTypes for the classes values are read as, so their adapters are resolved once. */
+    private final ConcurrentHashMap<Class<?>, ValueType<?>> mClassTypes = new ConcurrentHashMap<>();
+
     private ExpirableDiskLruCache() {
+        registerSerializer(mSerializer);
+        registerSerializer(new BinarySerializer());
+    }
+
+    public void init(Context context, Long size) throws Exception {
+        init(context, size, false);
+    }
+
+    public void init(Context context, Long size, boolean logEnabled) throws Exception {
+        init(context, size, logEnabled, false);
+    }
+
+    public void init(Context context, Long size, boolean logEnabled, boolean encryptionEnabled) throws Exception {
+        init(context, size, logEnabled, encryptionEnabled, null);
+    }
+
+    public void init(Context context, Long size, boolean logEnabled, boolean encryptionEnabled,
+            EncrypterDecrypter encrypterDecrypter) throws Exception {
+        init(context, size, logEnabled, encryptionEnabled, encrypterDecrypter, 1);
+    }
+
+    /**
+     * Like {@link #init(Context, Long, boolean, boolean, EncrypterDecrypter)}, but splits the cache
+     * into shardCount independent partitions that each get an equal part of size. Operations on
+     * different shards don't contend for a lock. Changing the shard count discards the cache. A
+     * cache opened by an earlier init is closed first.
+     *
+     * @param shardCount
+     * @throws Exception
+     */
+    public synchronized void init(Context context, Long size, boolean logEnabled, boolean encryptionEnabled,
+            EncrypterDecrypter encrypterDecrypter, int shardCount) throws Exception {
+        sLogEnabled = logEnabled;
+        if (mSimpleDiskCache != null || mOpening != null) {
+            close();
+        }
+        publish(open(context, context.getFilesDir(), size, encryptionEnabled, encrypterDecrypter, shardCount));
+    }
+
+    public Future<Void> initAsync(Context context, Long size, boolean logEnabled, boolean encryptionEnabled,
+            long readyTimeoutMillis) {
+        return initAsync(context, size, logEnabled, encryptionEnabled, null, 1, readyTimeoutMillis);
+    }
+
+    /**
+     * Like {@link #init(Context, Long, boolean, boolean, EncrypterDecrypter, int)}, but opens the
+     * cache on a background thread and returns at once. Opening replays the disk cache journal and,
+     * with the default encryption, loads Conceal's native library. Operations issued meanwhile wait
+     * for the cache up to readyTimeoutMillis, then fail with an {@link InterruptedIOException}. A
+     * cache opened by an earlier init is closed first.
+     *
+     * @param encrypterDecrypter null for the default encryption
+     * @param readyTimeoutMillis
+     * @return completes once the cache is open, or fails with the reason it could not be opened
+     */
+    public synchronized Future<Void> initAsync(final Context context, final Long size, boolean logEnabled,
+            final boolean encryptionEnabled, final EncrypterDecrypter encrypterDecrypter, final int shardCount,
+            long readyTimeoutMillis) {
+        sLogEnabled = logEnabled;
+        mReadyTimeoutMillis = readyTimeoutMillis;
+        IOException closeException = null;
+        if (mSimpleDiskCache != null || mOpening != null) {
+            try {
+                close();
+            } catch (IOException e) {
+                closeException = e;
+            }
+        }
+        final IOException previousCloseException = closeException;
+        FutureTask<Void> opening = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                if (previousCloseException != null) {
+                    throw previousCloseException;
+                }
+                SimpleDiskCache cache = open(context, context.getFilesDir(), size, encryptionEnabled,
+                        encrypterDecrypter, shardCount);
+                synchronized (mOpenLock) {
+                    if (mOpening != null) {
+                        publish(cache);
+                        return null;
+                    }
+                }
+                // closed meanwhile
+                cache.close();
+                return null;
+            }
+        });
+        mOpening = opening;
+        new CacheThreadFactory("init", Process.THREAD_PRIORITY_BACKGROUND, true).newThread(opening).start();
+        return opening;
+    }
+
+    /**
+     * Opens the disk cache and sets up the state operations need, without publishing the cache.
+     */
+    private SimpleDiskCache open(Context context, File dir, long size, boolean encryptionEnabled,
+            EncrypterDecrypter encrypterDecrypter, int shardCount) throws Exception {
+        long start = System.nanoTime();
+        if (encryptionEnabled && encrypterDecrypter == null) {
+            encrypterDecrypter = new EncrypterDecrypterConcealImpl(context);
+        }
+        long encryptionReady = System.nanoTime();
+        SimpleDiskCache simpleDiskCache = SimpleDiskCache.open(dir, 1, size, shardCount, mKeyHasher);
+        mEncryptionInitNanos = encryptionReady - start;
+        mDiskOpenNanos = System.nanoTime() - encryptionReady;
+        mMetrics = new CacheMetrics();
+        simpleDiskCache.setMetrics(mMetrics);
+        sEncryptionEnabled = encryptionEnabled;
+        if (sEncryptionEnabled) {
+            mEncrypterDecrypter = encrypterDecrypter;
+        }
+        return simpleDiskCache;
+    }
+
+    /**
+     * Makes cache the one operations use, after the rest of the state it was opened with.
+     */
+    private void publish(SimpleDiskCache cache) {
+        // published last, operations that see it see the rest of the state
+        mSimpleDiskCache = cache;
+        if (sLogEnabled) {
+            Log.d(LOG_TAG, "[OPENED] : " + getInitStats());
+        }
+    }
+
+    /**
+     * @return how long opening the cache took, or null while it isn't open
+     */
+    public InitStats getInitStats() {
+        if (mSimpleDiskCache == null) {
+            return null;
+        }
+        return new InitStats(mEncryptionInitNanos, mDiskOpenNanos, mReadyWaitCount.get(), mReadyWaitNanos.get());
+    }
+
+    /**
+     * Stops the sweeper, journal compaction and the async executor and closes the disk cache,
+     * after which its dir can be opened again. Operations still queued on the executor fail, later
+     * ones fail until the cache is initialized again.
+     *
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+        disableExpiredEntrySweeper();
+        disableIdleJournalCompaction();
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+            mExecutor = null;
+        }
+        clearMemoryCache();
+        SimpleDiskCache cache;
+        FutureTask<Void> opening;
+        synchronized (mOpenLock) {
+            cache = mSimpleDiskCache;
+            opening = mOpening;
+            mSimpleDiskCache = null;
+            mOpening = null;
+        }
+        if (cache != null) {
+            cache.close();
+        } else if (opening != null) {
+            // the opening closes the cache it opens, wait so its dir is free once close() returns
+            try {
+                opening.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the cache to open");
+            } catch (ExecutionException e) {
+                // nothing was opened
+            }
+        } else {
+            throw new IllegalStateException("init() was not called");
+        }
+        if (sLogEnabled) {
+            Log.d(LOG_TAG, "[CLOSED]");
+        }
+    }
+
+    /**
+     * Sets how keys are mapped to file names, takes effect on the next init. Defaults to
+     * {@link KeyHasher#MURMUR3}. Entries written by older versions, which named keys with
+     * {@link KeyHasher#MD5}, stay readable; switching between any other hashers loses the entries.
+     *
+     * @param keyHasher
+     */
+    public void setKeyHasher(KeyHasher keyHasher) {
+        mKeyHasher = keyHasher;
+    }
+
+    /**
+     * Sets the serializer used by puts that don't name one. Defaults to {@link GsonSerializer}.
+     * Entries are always read with the serializer that wrote them, so existing entries stay
+     * readable after switching.
+     *
+     * @param serializer
+     */
+    public void setSerializer(Serializer serializer) {
+        registerSerializer(serializer);
+        mSerializer = serializer;
+    }
+
+    /**
+     * Makes entries written by serializer readable. {@link GsonSerializer} and
+     * {@link BinarySerializer} are registered by default.
+     *
+     * @param serializer
+     */
+    public synchronized void registerSerializer(Serializer serializer) {
+        int id = checkSerializerId(serializer);
+        Serializer[] serializers = mSerializers.clone();
+        serializers[id] = serializer;
+        mSerializers = serializers;
+    }
+
+    /**
+     * @return the id of serializer
+     * @throws IllegalArgumentException if it can't be stored in entry metadata
+     */
+    private static int checkSerializerId(Serializer serializer) {
+        int id = serializer.getId();
+        if (id <= 0 || id == EntryMetadata.CODEC_RAW) {
+            throw new IllegalArgumentException("Serializer ids must be between 1 and 127, got " + id);
+        }
+        return id;
+    }
+
+    /**
+     * Compresses values of at least thresholdBytes, after serializing and before encrypting them.
+     * Values that don't get smaller are stored uncompressed. Entries are always read with the
+     * compressor that wrote them, so existing entries stay readable after switching or disabling.
+     *
+     * @param compressor {@link Lz4Compressor} for speed, {@link DeflateCompressor} for size, or
+     *            null to disable compression, the default
+     * @param thresholdBytes
+     */
+    public void setCompressor(Compressor compressor, int thresholdBytes) {
+        mCompression.configure(compressor, thresholdBytes);
+    }
+
+    /**
+     * Makes entries written by compressor readable. {@link DeflateCompressor} and
+     * {@link Lz4Compressor} are registered by default.
+     *
+     * @param compressor
+     */
+    public void registerCompressor(Compressor compressor) {
+        mCompression.register(compressor);
+    }
+
+    /**
+     * @return hit, miss, expiration, put, remove and eviction counts, bytes read and written and
+     *         operation latencies since init. Always recorded, as recording is a few atomic
+     *         increments.
+     */
+    public CacheStats getStats() {
+        return mMetrics.snapshot();
+    }
+
+    public CompressionStats getCompressionStats() {
+        return mCompression.stats();
+    }
+
+    /**
+     * Configures the executor that runs the async and callback operations. By default it has 2
+     * background priority threads and queues up to 128 operations. Operations already queued on
+     * the previous executor still run.
+     *
+     * @param poolSize number of threads
+     * @param queueCapacity operations that can wait for a thread, more are rejected
+     * @param threadPriority a {@link Process} thread priority
+     */
+    public synchronized void setAsyncExecutor(int poolSize, int queueCapacity, int threadPriority) {
+        CacheExecutor executor = new CacheExecutor(poolSize, queueCapacity, threadPriority);
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+        }
+        mExecutor = executor;
+    }
+
+    public synchronized ExecutorStats getAsyncExecutorStats() {
+        return executor().stats();
+    }
+
+    /**
+     * Keeps up to maxSizeBytes of deserialized values in memory in front of the disk cache. Sizes
+     * are measured as the serialized size of each value. Values returned from the memory cache are
+     * shared between callers, so they must not be mutated. Pass 0 to disable.
+     *
+     * @param maxSizeBytes
+     */
+    public void setMemoryCacheSize(long maxSizeBytes) {
+        mMemoryCache = maxSizeBytes > 0 ? new MemoryCache(maxSizeBytes, mAccessExpiry) : null;
+    }
+
+    public long getMemoryCacheHitCount() {
+        MemoryCache memoryCache = mMemoryCache;
+        return memoryCache == null ? 0 : memoryCache.hitCount();
+    }
+
+    public long getMemoryCacheMissCount() {
+        MemoryCache memoryCache = mMemoryCache;
+        return memoryCache == null ? 0 : memoryCache.missCount();
+    }
+
+    /**
+     * Starts removing expired entries in the background, instead of only when they are read. Every
+     * tickMillis at most maxRemovalsPerTick entries are removed, so sweeping never holds up
+     * foreground operations for long.
+     *
+     * @param tickMillis
+     * @param maxRemovalsPerTick
+     */
+    public synchronized void enableExpiredEntrySweeper(long tickMillis, int maxRemovalsPerTick) {
+        disableExpiredEntrySweeper();
+        mSweeper = new ExpiredEntrySweeper(openedCache(), tickMillis, maxRemovalsPerTick);
+        mSweeper.start();
+    }
+
+    public synchronized void disableExpiredEntrySweeper() {
+        if (mSweeper != null) {
+            mSweeper.stop();
+            mSweeper = null;
+        }
+    }
+
+    /**
+     * @return counters of the background sweeper, or null if it isn't enabled
+     */
+    public synchronized SweeperStats getSweeperStats() {
+        return mSweeper == null ? null : mSweeper.stats();
+    }
+
+    /**
+     * Compacts the disk cache journals once no entry has been touched for idleMillis. DiskLruCache
+     * otherwise rebuilds a journal once 2000 redundant lines pile up, blocking the operations that
+     * arrive meanwhile at whatever moment that happens. Does nothing if the DiskLruCache version in
+     * use can't be compacted.
+     *
+     * @param idleMillis
+     * @param minRedundantOps journals with fewer redundant lines are left alone, less than 2000
+     */
+    public synchronized void enableIdleJournalCompaction(long idleMillis, int minRedundantOps) {
+        disableIdleJournalCompaction();
+        mCompactor = new JournalCompactor(openedCache(), idleMillis, minRedundantOps);
+        mCompactor.start();
+    }
+
+    public synchronized void disableIdleJournalCompaction() {
+        if (mCompactor != null) {
+            mCompactor.stop();
+            mCompactor = null;
+        }
+    }
+
+    /**
+     * Compacts the disk cache journals now. Operations wait while a journal is rewritten, so call
+     * this when the cache isn't busy. Does nothing if the DiskLruCache version in use can't be
+     * compacted, {@link #getJournalStats()} then reports -1 redundant lines.
+     */
+    public void compactJournal() throws IOException {
+        cache().compact(1);
+    }
+
+    public JournalStats getJournalStats() {
+        return openedCache().journalStats();
+    }
+
+    /**
+     * Once the disk cache is full, a new entry is only written if its key was read or put more
+     * often recently than the least recently used entry it would evict. Keeps one-off keys, like
+     * those of a scroll through a long list, from pushing out the entries read over and over.
+     * Turned away puts return normally and are counted in {@link CacheStats#getRejectionCount()}.
+     *
+     * @param expectedEntries roughly how many entries fit in the cache. Access counts take about
+     *            8 bits per expected entry and fade by half after 10 accesses per expected entry.
+     * @throws UnsupportedOperationException if the DiskLruCache version in use doesn't expose its
+     *             eviction order
+     */
+    public void enableAdmissionFilter(int expectedEntries) {
+        if (expectedEntries <= 0) {
+            throw new IllegalArgumentException("expectedEntries must be positive");
+        }
+        openedCache().setAdmissionFilter(expectedEntries);
+    }
+
+    public void disableAdmissionFilter() {
+        openedCache().setAdmissionFilter(0);
+    }
+
+    /**
+     * Puts of values larger than maxEntrySizeBytes on disk, after compressing and encrypting,
+     * fail with an {@link EntryTooLargeException} as soon as they outgrow it, so one huge value
+     * can't evict many small ones. The key's previous entry is removed.
+     *
+     * @param maxEntrySizeBytes 0 for no limit, the default
+     */
+    public void setMaxEntrySize(long maxEntrySizeBytes) throws IOException {
+        setMaxEntrySize(maxEntrySizeBytes, 0);
+    }
+
+    /**
+     * Like {@link #setMaxEntrySize(long)}, but larger values are written to a separate store with
+     * its own size budget instead, where they only evict each other. Values that don't fit that
+     * budget either are rejected. Passing 0 for largeEntryMaxSizeBytes deletes the store. Moving a
+     * value needs DiskLruCache 2.0.2, with other versions larger values are rejected.
+     *
+     * @param maxEntrySizeBytes 0 for no limit
+     * @param largeEntryMaxSizeBytes
+     */
+    public void setMaxEntrySize(long maxEntrySizeBytes, long largeEntryMaxSizeBytes) throws IOException {
+        if (maxEntrySizeBytes < 0 || largeEntryMaxSizeBytes < 0) {
+            throw new IllegalArgumentException("Sizes must not be negative");
+        }
+        if (maxEntrySizeBytes == 0 && largeEntryMaxSizeBytes > 0) {
+            throw new IllegalArgumentException("A large entry store needs a maximum entry size");
+        }
+        cache().setMaxEntrySize(maxEntrySizeBytes, largeEntryMaxSizeBytes);
+    }
+
+    /**
+     * Reloads entries that are read after the given fraction of their evictionTimeSpan has passed,
+     * so readers keep getting the cached value while a fresh one is loaded in the background. It
+     * is written like the entry it replaces, with the same evictionTimeSpan, serializer and expire
+     * after access setting. Entries read with {@link #get(String, Class, Loader, Long)}
+     * are reloaded with its loader, others with the given one.
+     *
+     * Values are only served from the memory cache until they are due for a reload.
+     *
+     * @param fraction of the evictionTimeSpan after which entries are reloaded, between 0 and 1
+     * @param loader for entries read without one, may be null
+     */
+    public void enableRefreshAhead(double fraction, Loader<?> loader) {
+        if (fraction <= 0 || fraction >= 1) {
+            throw new IllegalArgumentException("fraction must be between 0 and 1");
+        }
+        mRefreshLoader = loader;
+        mRefreshAheadFraction = fraction;
+        clearMemoryCache();
+    }
+
+    public void disableRefreshAhead() {
+        mRefreshAheadFraction = 0;
+        mRefreshLoader = null;
+    }
+
+    /**
+     * Will never be expired based on evictionTimeSpan. Can only be expired if
+     * size of cache is full and this is the oldest entry in cache
+     *
+     * @param key
+     * @param value
+     * @throws IOException
+     */
+    public void put(String key, Object value) throws Exception {
+        put(key, value, DEFAULT_EVICTION_TIME_SPAN);
+    }
+
+    public void put(String key, Object value, PutCallback callback) {
+        execute(new PutTask(key, value, DEFAULT_EVICTION_TIME_SPAN, callback));
+    }
+
+    /**
+     * Will be expired based on evictionTimeSpan. And can also be expired if
+     * size of cache is full and this is the oldest entry in cache
+     *
+     * @param key
+     * @param value
+     * @param evictionTimeSpan
+     * @throws IOException
+     */
+    public void put(String key, Object value, Long evictionTimeSpan) throws Exception {
+        put(key, value, evictionTimeSpan, mSerializer);
+    }
+
+    /**
+     * Like {@link #put(String, Object, Long)}, but stores the value with the given serializer
+     * instead of the default one. The serializer is registered, so the entry can be read back.
+     *
+     * @param key
+     * @param value
+     * @param evictionTimeSpan
+     * @param serializer
+     * @throws Exception
+     */
+    public void put(String key, Object value, Long evictionTimeSpan, Serializer serializer) throws Exception {
+        if (mSerializers[checkSerializerId(serializer)] != serializer) {
+            registerSerializer(serializer);
+        }
+        writeEntry(key, value, null, evictionTimeSpan, false, serializer);
+    }
+
+    /**
+     * Like {@link #put(String, Object, Long)}, but the value is written as type, its declared
+     * type, rather than as its runtime class. Read it back with {@link #get(String, ValueType)}.
+     *
+     * @param key
+     * @param value
+     * @param type
+     * @param evictionTimeSpan
+     * @throws Exception
+     */
+    public <T> void put(String key, T value, ValueType<T> type, Long evictionTimeSpan) throws Exception {
+        writeEntry(key, value, type, evictionTimeSpan, false, mSerializer);
+    }
+
+    /**
+     * Like {@link #put(String, Object, Long)}, but every read pushes the eviction time out to
+     * evictionTimeSpan from the read, so the entry expires once it hasn't been read for that long.
+     * Only the entry's metadata is rewritten, at most once per 1/16th of evictionTimeSpan however
+     * often the entry is read, and in the background. Reloads by refresh ahead expire after access
+     * too.
+     *
+     * @param key
+     * @param value
+     * @param evictionTimeSpan
+     * @throws Exception
+     */
+    public void putExpireAfterAccess(String key, Object value, Long evictionTimeSpan) throws Exception {
+        writeEntry(key, value, null, evictionTimeSpan, true, mSerializer);
+    }
+
+    /**
+     * Puts all values with the same evictionTimeSpan. Cheaper than separate puts, as the journal is
+     * flushed once for all of them, see {@link SimpleDiskCache.Batch}. A failing value doesn't stop
+     * the others from being written.
+     *
+     * @param values
+     * @param evictionTimeSpan
+     * @return the keys that could not be written, with the reason
+     * @throws IOException if the journal could not be flushed after the writes
+     */
+    public Map<String, Exception> putAll(Map<String, ?> values, Long evictionTimeSpan) throws IOException {
+        Serializer serializer = mSerializer;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Map<String, Exception> failures = new HashMap<>();
+        SimpleDiskCache.Batch batch = cache().newBatch();
+        try {
+            for (Map.Entry<String, ?> entry : values.entrySet()) {
+                try {
+                    buffer.reset();
+                    write(batch, entry.getKey(), entry.getValue(), null, evictionTimeSpan, false, serializer,
+                            buffer);
+                } catch (Exception e) {
+                    failures.put(entry.getKey(), e);
+                }
+            }
+        } finally {
+            batch.close();
+        }
+        return failures;
+    }
+
+    /**
+     * Writes a single value, see {@link #write}.
+     */
+    private void writeEntry(String key, Object value, ValueType<?> type, long evictionTimeSpan,
+            boolean expireAfterAccess, Serializer serializer) throws Exception {
+        SimpleDiskCache.Batch batch = cache().newBatch();
+        try {
+            write(batch, key, value, type, evictionTimeSpan, expireAfterAccess, serializer,
+                    new ByteArrayOutputStream());
+        } finally {
+            batch.close();
+        }
+    }
+
+    /**
+     * @param type declared type of value, or null to write it as its runtime class
+     * @param expireAfterAccess whether every read pushes the eviction time out to evictionTimeSpan
+     *            from the read
+     */
+    private void write(SimpleDiskCache.Batch batch, String key, Object value, ValueType<?> type,
+            long evictionTimeSpan, boolean expireAfterAccess, Serializer serializer, ByteArrayOutputStream buffer)
+            throws Exception {
+        long start = System.nanoTime();
+        try {
+            EntryMetadata metadata = new EntryMetadata(getEvictionTime(evictionTimeSpan));
+            metadata.setCodecId(serializer.getId());
+            // the span, not the eviction time, is what a refresh ahead rewrites the entry with
+            metadata.putExtra(expireAfterAccess ? EntryMetadata.EXTRA_EXPIRE_AFTER_ACCESS
+                    : EntryMetadata.EXTRA_TIME_SPAN, evictionTimeSpan);
+            long serializedSize;
+            boolean admitted;
+            if (mCompression.isEnabled() || !canEncryptStreams()) {
+                serialize(serializer, value, type, buffer);
+                serializedSize = buffer.size();
+                metadata.putExtra(EntryMetadata.EXTRA_SERIALIZED_LENGTH, serializedSize);
+                admitted = writeValue(batch, key, buffer.toByteArray(), 0, buffer.size(), metadata);
+            } else {
+                // nothing needs the whole value, so it is serialized straight into the entry
+                removeFromMemoryCache(key);
+                SimpleDiskCache.CacheOutputStream out = batch.openStream(key, metadata);
+                OutputStream valueOut = out;
+                try {
+                    valueOut = encryptingStream(out, key, metadata);
+                    CountingOutputStream counting = new CountingOutputStream(valueOut);
+                    serialize(serializer, value, type, counting);
+                    serializedSize = counting.mCount;
+                    // the metadata is written when the stream is closed
+                    metadata.putExtra(EntryMetadata.EXTRA_SERIALIZED_LENGTH, serializedSize);
+                    counting.close();
+                    admitted = !out.isRejected();
+                } catch (Exception e) {
+                    abort(out, valueOut);
+                    throw out.getTooLargeException() != null ? out.getTooLargeException() : e;
+                }
+            }
+            MemoryCache memoryCache = mMemoryCache;
+            // an entry the disk turned away would otherwise only live as long as the memory copy
+            if (memoryCache != null && admitted) {
+                memoryCache.put(key, value, serializedSize, memoryEvictionTime(metadata),
+                        metadata.getExpireAfterAccess());
+            }
+            if (sLogEnabled) {
+                Log.d(LOG_TAG, "[PUT] : " + key);
+            }
+        } finally {
+            mMetrics.mPutLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Compresses and encrypts value as configured, and writes it to the entry for key.
+     *
+     * @return false if the admission filter turned the entry away
+     */
+    private boolean writeValue(SimpleDiskCache.Batch batch, String key, byte[] value, int offset, int length,
+            EntryMetadata metadata) throws Exception {
+        if (mCompression.accepts(length)) {
+            byte[] compressed = mCompression.compress(value, offset, length, metadata);
+            if (compressed != null) {
+                value = compressed;
+                offset = 0;
+                length = compressed.length;
+            }
+        }
+        if (sEncryptionEnabled && !canEncryptStreams()) {
+            if (offset != 0 || length != value.length) {
+                value = Arrays.copyOfRange(value, offset, offset + length);
+            }
+            value = mEncrypterDecrypter.encrypt(value, key);
+            offset = 0;
+            length = value.length;
+            metadata.setFlag(EntryMetadata.FLAG_ENCRYPTED, true);
+        }
+        // drop the old value first so a failed write can't leave it visible
+        removeFromMemoryCache(key);
+        SimpleDiskCache.CacheOutputStream out = batch.openStream(key, metadata);
+        OutputStream valueOut = out;
+        try {
+            valueOut = encryptingStream(out, key, metadata);
+            valueOut.write(value, offset, length);
+            valueOut.close();
+        } catch (Exception e) {
+            abort(out, valueOut);
+            throw e;
+        }
+        return !out.isRejected();
+    }
+
+    public void put(String key, Object value, Long evictionTimeSpan, PutCallback callback) {
+        execute(new PutTask(key, value, evictionTimeSpan, callback));
+    }
+
+    /**
+     * Puts on the cache executor.
+     *
+     * @param key
+     * @param value
+     * @param evictionTimeSpan
+     * @return a future that completes when the value is written
+     * @throws RejectedExecutionException if the executor queue is full
+     */
+    public Future<Void> putAsync(final String key, final Object value, final Long evictionTimeSpan) {
+        return executor().submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                put(key, value, evictionTimeSpan);
+                return null;
+            }
+        });
+    }
+
+    public <T> T get(String key, Class<T> classOfT) throws Exception {
+        return get(key, valueType(classOfT), mRefreshLoader);
+    }
+
+    /**
+     * Like {@link #get(String, Class)}, for generic types like {@code List<Foo>} too. Keep type
+     * around and reuse it, it remembers the Gson TypeAdapter it resolved on the first read.
+     *
+     * @param key
+     * @param type
+     * @return
+     * @throws Exception
+     */
+    public <T> T get(String key, ValueType<T> type) throws Exception {
+        return get(key, type, mRefreshLoader);
+    }
+
+    private <T> T get(String key, ValueType<T> type, Loader<?> refreshLoader) throws Exception {
+        SimpleDiskCache.Batch batch = cache().newBatch();
+        try {
+            return read(batch, key, type, refreshLoader);
+        } finally {
+            batch.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ValueType<T> valueType(Class<T> classOfT) {
+        ValueType<T> type = (ValueType<T>) mClassTypes.get(classOfT);
+        if (type == null) {
+            type = ValueType.of(classOfT);
+            ValueType<T> raced = (ValueType<T>) mClassTypes.putIfAbsent(classOfT, type);
+            if (raced != null) {
+                type = raced;
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Gets the value of key, or loads it if there is no unexpired value and puts it with
+     * evictionTimeSpan. Only one load per key and class runs at a time, callers that miss while a
+     * load is in flight wait for it and share its value or exception. The value is returned even if
+     * it could not be written back.
+     *
+     * @param key
+     * @param classOfT
+     * @param loader
+     * @param evictionTimeSpan
+     * @return the cached or loaded value, null if the loader returned null
+     * @throws Exception if reading the cache or the load failed
+     */
+    public <T> T get(final String key, final Class<T> classOfT, final Loader<T> loader, final Long evictionTimeSpan)
+            throws Exception {
+        final ValueType<T> type = valueType(classOfT);
+        T value = get(key, type, loader);
+        if (value != null) {
+            return value;
+        }
+        return Primitives.wrap(classOfT).cast(mLoads.execute(key, type.getType(), new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                // a load that finished since the miss above has put the value already
+                T value = get(key, type, loader);
+                if (value != null) {
+                    return value;
+                }
+                value = loader.load(key);
+                if (value != null) {
+                    try {
+                        put(key, value, evictionTimeSpan);
+                    } catch (Exception e) {
+                        if (sLogEnabled) {
+                            Log.d(LOG_TAG, "[LOADED, NOT WRITTEN] : " + key + " " + e);
+                        }
+                    }
+                }
+                return value;
+            }
+        }));
+    }
+
+    /**
+     * Gets the values of several keys. Expired entries found are removed with one journal flush,
+     * see {@link SimpleDiskCache.Batch}. A failing key doesn't stop the others from being read.
+     *
+     * @param keys
+     * @param classOfT
+     * @return the values found and the keys that could not be read
+     * @throws IOException if the journal could not be flushed after removing expired entries
+     */
+    public <T> BatchResult<T> getAll(Collection<String> keys, Class<T> classOfT) throws IOException {
+        return getAll(keys, valueType(classOfT));
+    }
+
+    /**
+     * Like {@link #getAll(Collection, Class)}, see {@link #get(String, ValueType)}.
+     */
+    public <T> BatchResult<T> getAll(Collection<String> keys, ValueType<T> type) throws IOException {
+        Map<String, T> values = new HashMap<>();
+        Map<String, Exception> failures = new HashMap<>();
+        SimpleDiskCache.Batch batch = cache().newBatch();
+        try {
+            for (String key : keys) {
+                try {
+                    T value = read(batch, key, type, mRefreshLoader);
+                    if (value != null) {
+                        values.put(key, value);
+                    }
+                } catch (Exception e) {
+                    failures.put(key, e);
+                }
+            }
+        } finally {
+            batch.close();
+        }
+        return new BatchResult<>(values, failures);
+    }
+
+    private <T> T read(SimpleDiskCache.Batch batch, String key, ValueType<T> type, Loader<?> refreshLoader)
+            throws Exception {
+        long start = System.nanoTime();
+        try {
+            MemoryCache memoryCache = mMemoryCache;
+            long generation = 0;
+            if (memoryCache != null) {
+                generation = memoryCache.generation();
+                T value = memoryCache.get(key, type, Clock.now());
+                if (value != null) {
+                    mMetrics.recordHit();
+                    if (sLogEnabled) {
+                        Log.d(LOG_TAG, "[MEMORY HIT] : " + key);
+                    }
+                    return value;
+                }
+            }
+            SimpleDiskCache.InputStreamEntry entry = openEntry(batch, key);
+            if (entry == null) {
+                return null;
+            }
+            try {
+                EntryMetadata metadata = entry.getMetadata();
+                Serializer serializer = getSerializer(metadata);
+                InputStream in = mCompression.decompress(decryptingStream(key, entry), metadata);
+                T value;
+                try {
+                    value = deserialize(serializer, in, type);
+                    if (isEncrypted(metadata)) {
+                        // a streaming cipher only verifies the value once it is read to the end
+                        ByteStreams.exhaust(in);
+                    }
+                } catch (SchemaMismatchException e) {
+                    // written before the value's classes changed, it can't be read anymore
+                    if (sLogEnabled) {
+                        Log.d(LOG_TAG, "[SCHEMA CHANGED] : " + key);
+                    }
+                    delete(batch, key);
+                    return null;
+                } finally {
+                    // releases the inflater of compressed entries
+                    in.close();
+                }
+                if (memoryCache != null) {
+                    // sized like the put did, entries from before the length was recorded by their file
+                    long serializedSize = metadata.getLongExtra(EntryMetadata.EXTRA_SERIALIZED_LENGTH,
+                            entry.getLength());
+                    memoryCache.putIfUnchanged(key, value, serializedSize, memoryEvictionTime(metadata),
+                            metadata.getExpireAfterAccess(), generation);
+                }
+                if (refreshLoader != null && Clock.now() >= refreshTime(metadata)) {
+                    refreshAhead(key, refreshLoader, type, serializer, metadata);
+                }
+                return value;
+            } finally {
+                entry.close();
+            }
+        } finally {
+            mMetrics.mGetLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    public void putBytes(String key, byte[] value) throws Exception {
+        putBytes(key, value, DEFAULT_EVICTION_TIME_SPAN);
+    }
+
+    /**
+     * Stores value as is, without a serializer. Use {@link #getBytes(String)} to read it back.
+     *
+     * @param key
+     * @param value
+     * @param evictionTimeSpan
+     * @throws Exception
+     */
+    public void putBytes(String key, byte[] value, Long evictionTimeSpan) throws Exception {
+        putBytes(key, value, 0, value.length, evictionTimeSpan);
+    }
+
+    /**
+     * Stores the remaining bytes of value as is. The buffer's position is not changed.
+     *
+     * @param key
+     * @param value
+     * @param evictionTimeSpan
+     * @throws Exception
+     */
+    public void putBytes(String key, ByteBuffer value, Long evictionTimeSpan) throws Exception {
+        if (value.hasArray()) {
+            putBytes(key, value.array(), value.arrayOffset() + value.position(), value.remaining(),
+                    evictionTimeSpan);
+        } else {
+            byte[] bytes = new byte[value.remaining()];
+            value.duplicate().get(bytes);
+            putBytes(key, bytes, 0, bytes.length, evictionTimeSpan);
+        }
+    }
+
+    private void putBytes(String key, byte[] value, int offset, int length, Long evictionTimeSpan)
+            throws Exception {
+        long start = System.nanoTime();
+        try {
+            EntryMetadata metadata = new EntryMetadata(getEvictionTime(evictionTimeSpan));
+            metadata.setCodecId(EntryMetadata.CODEC_RAW);
+            SimpleDiskCache.Batch batch = cache().newBatch();
+            try {
+                writeValue(batch, key, value, offset, length, metadata);
+            } finally {
+                batch.close();
+            }
+            if (sLogEnabled) {
+                Log.d(LOG_TAG, "[PUT] : " + key);
+            }
+        } finally {
+            mMetrics.mPutLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the bytes stored for key, decrypted if needed, or null if there is no unexpired
+     * entry. For entries put as objects these are their serialized form.
+     *
+     * @param key
+     * @return
+     * @throws Exception
+     */
+    public byte[] getBytes(String key) throws Exception {
+        long start = System.nanoTime();
+        try {
+            SimpleDiskCache.Batch batch = cache().newBatch();
+            try {
+                SimpleDiskCache.InputStreamEntry entry = openEntry(batch, key);
+                if (entry == null) {
+                    return null;
+                }
+                try {
+                    return readValue(key, entry);
+                } finally {
+                    entry.close();
+                }
+            } finally {
+                batch.close();
+            }
+        } finally {
+            mMetrics.mGetLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Like {@link #getBytes(String)}, wrapped in a ByteBuffer.
+     *
+     * @param key
+     * @return
+     * @throws Exception
+     */
+    public ByteBuffer getByteBuffer(String key) throws Exception {
+        byte[] value = getBytes(key);
+        return value == null ? null : ByteBuffer.wrap(value);
+    }
+
+    /**
+     * Like {@link #getByteBuffer(String)}, but read only. Values of 256 KB and more that are neither
+     * encrypted nor compressed are memory mapped rather than copied onto the heap. The mapping stays
+     * valid when the entry is replaced or evicted. Close the returned handle once done with the
+     * buffer.
+     *
+     * @param key
+     * @return the value, or null if there is none
+     * @throws Exception
+     */
+    public MappedValue getMappedValue(String key) throws Exception {
+        long start = System.nanoTime();
+        try {
+            SimpleDiskCache.Batch batch = cache().newBatch();
+            try {
+                SimpleDiskCache.InputStreamEntry entry = openEntry(batch, key);
+                if (entry == null) {
+                    return null;
+                }
+                boolean mapped = false;
+                try {
+                    EntryMetadata metadata = entry.getMetadata();
+                    if (entry.getLength() >= MAPPED_READ_THRESHOLD && !isEncrypted(metadata)
+                            && metadata.getCompressorId() == EntryMetadata.COMPRESSOR_NONE) {
+                        MappedValue value = new MappedValue(entry.mapValue(), entry);
+                        mapped = true;
+                        return value;
+                    }
+                    return new MappedValue(ByteBuffer.wrap(readValue(key, entry)), null);
+                } finally {
+                    if (!mapped) {
+                        entry.close();
+                    }
+                }
+            } finally {
+                batch.close();
+            }
+        } finally {
+            mMetrics.mGetLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Stores bitmap compressed in format, to be read back with {@link #getBitmap(String)}.
+     *
+     * @param key
+     * @param bitmap
+     * @param format JPEG or WEBP for photos, PNG to keep them lossless
+     * @param quality 0 to 100, ignored by PNG
+     * @param evictionTimeSpan
+     * @throws Exception
+     */
+    public void putBitmap(String key, Bitmap bitmap, Bitmap.CompressFormat format, int quality,
+            Long evictionTimeSpan) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!bitmap.compress(format, quality, out)) {
+            throw new IOException("Bitmap " + key + " could not be compressed as " + format);
+        }
+        putBytes(key, out.toByteArray(), evictionTimeSpan);
+    }
+
+    /**
+     * Returns the image stored for key, at full size, or null if there is no unexpired entry or
+     * it isn't an image.
+     *
+     * @param key
+     * @return
+     * @throws Exception
+     */
+    public Bitmap getBitmap(String key) throws Exception {
+        return getBitmap(key, 0, 0, null, null);
+    }
+
+    /**
+     * Like {@link #getBitmap(String)}, but sampled down by a power of 2 to no smaller than
+     * reqWidth by reqHeight, so a thumbnail doesn't take the memory of the full image. With a pool,
+     * the image is decoded into a bitmap from it where the platform allows, from Honeycomb on, so
+     * scrolling through a list of images doesn't allocate a bitmap per row. Give bitmaps back to
+     * the pool once they are no longer displayed.
+     *
+     * @param key
+     * @param reqWidth size the image is displayed at, 0 for full size
+     * @param reqHeight
+     * @param config preferred config, like RGB_565 for opaque images at half the memory, null for
+     *            ARGB_8888
+     * @param pool bitmaps to decode into, may be null
+     * @return
+     * @throws Exception
+     */
+    public Bitmap getBitmap(String key, int reqWidth, int reqHeight, Bitmap.Config config, BitmapPool pool)
+            throws Exception {
+        byte[] data = getBytes(key);
+        return data == null ? null : BitmapDecoder.decode(data, reqWidth, reqHeight, config, pool);
+    }
+
+    public <T> void get(String key, Class<T> classOfT, GetCallback<T> callback) {
+        execute(new GetTask<T>(key, classOfT, callback));
+    }
+
+    /**
+     * Gets on the cache executor.
+     *
+     * @param key
+     * @param classOfT
+     * @return a future of the value, or of null if there is no unexpired value
+     * @throws RejectedExecutionException if the executor queue is full
+     */
+    public <T> Future<T> getAsync(final String key, final Class<T> classOfT) {
+        return executor().submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return get(key, classOfT);
+            }
+        });
     }
 
-    public void init(Context context, Long size) throws Exception {
-        init(context, size, false);
+    public void remove(String key) throws Exception {
+        SimpleDiskCache.Batch batch = cache().newBatch();
+        try {
+            remove(batch, key);
+        } finally {
+            batch.close();
+        }
     }
 
-    public void init(Context context, Long size, boolean logEnabled) throws Exception {
-        init(context, size, logEnabled, false);
+    /**
+     * Removes several keys, with one journal flush. A failing key doesn't stop the others from
+     * being removed.
+     *
+     * @param keys
+     * @return the keys that could not be removed, with the reason
+     * @throws IOException if the journal could not be flushed after the removals
+     */
+    public Map<String, Exception> removeAll(Collection<String> keys) throws IOException {
+        Map<String, Exception> failures = new HashMap<>();
+        SimpleDiskCache.Batch batch = cache().newBatch();
+        try {
+            for (String key : keys) {
+                try {
+                    remove(batch, key);
+                } catch (Exception e) {
+                    failures.put(key, e);
+                }
+            }
+        } finally {
+            batch.close();
+        }
+        return failures;
     }
 
-    public void init(Context context, Long size, boolean logEnabled, boolean encryptionEnabled) throws Exception {
-        EncrypterDecrypter encrypterDecrypter = null;
-        if (encryptionEnabled) {
-            encrypterDecrypter = new EncrypterDecrypterConcealImpl(context);
+    private void remove(SimpleDiskCache.Batch batch, String key) throws IOException {
+        long start = System.nanoTime();
+        try {
+            delete(batch, key);
+            mMetrics.recordRemove();
+        } finally {
+            mMetrics.mRemoveLatency.record(System.nanoTime() - start);
+        }
+        if (sLogEnabled) {
+            Log.d(LOG_TAG, "[REMOVED] : " + key);
         }
-        init(context, size, logEnabled, encryptionEnabled, encrypterDecrypter);
     }
 
-    public void init(Context context, Long size, boolean logEnabled, boolean encryptionEnabled,
-            EncrypterDecrypter encrypterDecrypter) throws Exception {
-        mGson = new Gson();
-        mSimpleDiskCache = SimpleDiskCache.open(context.getFilesDir(), 1, size);
-        sLogEnabled = logEnabled;
-        sEncryptionEnabled = encryptionEnabled;
-        if (sEncryptionEnabled) {
-            mEncrypterDecrypter = encrypterDecrypter;
-        }
+    private void delete(SimpleDiskCache.Batch batch, String key) throws IOException {
+        removeFromMemoryCache(key);
+        batch.remove(key);
+    }
+
+    public void remove(String key, RemoveCallback callback) {
+        execute(new RemoveTask(key, callback));
     }
 
     /**
-     * Will never be expired based on evictionTimeSpan. Can only be expired if
-     * size of cache is full and this is the oldest entry in cache
+     * Removes on the cache executor.
      *
      * @param key
-     * @param value
-     * @throws IOException
+     * @return a future that completes when the entry is removed
+     * @throws RejectedExecutionException if the executor queue is full
      */
-    public void put(String key, Object value) throws Exception {
-        put(key, value, DEFAULT_EVICTION_TIME_SPAN);
-    }
-
-    public void put(String key, Object value, PutCallback callback) {
-        new PutTask(key, value, DEFAULT_EVICTION_TIME_SPAN, callback).execute();
+    public Future<Void> removeAsync(final String key) {
+        return executor().submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                remove(key);
+                return null;
+            }
+        });
     }
 
     /**
-     * Will be expired based on evictionTimeSpan. And can also be expired if
-     * size of cache is full and this is the oldest entry in cache
+     * True if there is an entry for key which hasn't expired. Answered from an in memory index
+     * without opening the entry.
      *
      * @param key
-     * @param value
-     * @param evictionTimeSpan
      * @throws IOException
      */
-    public void put(String key, Object value, Long evictionTimeSpan) throws Exception {
-        Map<String, Serializable> map = new HashMap<>(1);
-        map.put(EVICTION_TIME, getEvictionTime(evictionTimeSpan));
-        byte[] valueBytes = mGson.toJson(value).getBytes(UTF_8);
-        if (sEncryptionEnabled) {
-            valueBytes = mEncrypterDecrypter.encrypt(valueBytes, key);
-        }
-        mSimpleDiskCache.put(key, new String(valueBytes, UTF_8), map);
-        if (sLogEnabled) {
-            Log.d(LOG_TAG, "[PUT] : " + key);
-        }
+    public boolean contains(String key) throws IOException {
+        return cache().contains(key);
     }
 
-    public void put(String key, Object value, Long evictionTimeSpan, PutCallback callback) {
-        new PutTask(key, value, evictionTimeSpan, callback).execute();
+    public void removeAll() throws Exception {
+        clearMemoryCache();
+        cache().clear();
+        if (sLogEnabled) {
+            Log.d(LOG_TAG, "[ALL CLEARED]");
+        }
     }
 
-    public <T> T get(String key, Class<T> classOfT) throws Exception {
-        SimpleDiskCache.StringEntry entry = mSimpleDiskCache.getString(key);
+    /**
+     * @return the entry for key, or null if there is none or it has expired, in which case it is
+     *         removed
+     */
+    private SimpleDiskCache.InputStreamEntry openEntry(SimpleDiskCache.Batch batch, String key) throws IOException {
+        long evictionTime = batch.peekEvictionTime(key);
+        SimpleDiskCache.InputStreamEntry entry = null;
+        if (evictionTime != ExpiryIndex.ABSENT) {
+            if (evictionTime != ExpiryIndex.UNKNOWN && Clock.now() > evictionTime) {
+                expire(batch, key);
+                return null;
+            }
+            entry = batch.getInputStream(key);
+        } else {
+            batch.recordMiss(key);
+        }
         if (entry == null) {
+            mMetrics.recordMiss();
             if (sLogEnabled) {
                 Log.d(LOG_TAG, "[MISS] : " + key);
             }
             return null;
         }
-        Map<String, Serializable> metadata = entry.getMetadata();
-        Long evictionTime = (Long) metadata.get(EVICTION_TIME);
-        if (System.currentTimeMillis() <= evictionTime) {
-            if (sLogEnabled) {
-                Log.d(LOG_TAG, "[HIT] : " + key);
-            }
-            byte[] valueBytes = entry.getString().getBytes(UTF_8);
-            if (sEncryptionEnabled) {
-                valueBytes = mEncrypterDecrypter.decrypt(valueBytes, key);
-            }
-            return mGson.fromJson(new String(valueBytes, UTF_8), classOfT);
+        if (Clock.now() > entry.getMetadata().getEvictionTime()) {
+            entry.close();
+            expire(batch, key);
+            return null;
+        }
+        mMetrics.recordHit();
+        mMetrics.recordRead(entry.getLength());
+        if (sLogEnabled) {
+            Log.d(LOG_TAG, "[HIT] : " + key);
+        }
+        long expireAfterAccess = entry.getMetadata().getExpireAfterAccess();
+        if (expireAfterAccess > 0) {
+            mAccessExpiry.onAccess(key, Clock.now() + expireAfterAccess, expireAfterAccess);
         }
+        return entry;
+    }
+
+    private void expire(SimpleDiskCache.Batch batch, String key) throws IOException {
+        mMetrics.recordMiss();
+        mMetrics.recordExpiration();
         if (sLogEnabled) {
             Log.d(LOG_TAG, "[EXPIRED] : " + key);
         }
-        remove(key);
-        return null;
+        delete(batch, key);
     }
 
-    public <T> void get(String key, Class<T> classOfT, GetCallback<T> callback) {
-        new GetTask(key, classOfT, callback).execute();
+    /**
+     * @return the value bytes, decrypted and decompressed
+     */
+    private byte[] readValue(String key, SimpleDiskCache.InputStreamEntry entry) throws Exception {
+        EntryMetadata metadata = entry.getMetadata();
+        if (isEncrypted(metadata) && !canEncryptStreams()
+                && metadata.getCompressorId() == EntryMetadata.COMPRESSOR_NONE) {
+            return mEncrypterDecrypter.decrypt(ByteStreams.toByteArray(entry.getInputStream()), key);
+        }
+        InputStream in = mCompression.decompress(decryptingStream(key, entry), metadata);
+        try {
+            return ByteStreams.toByteArray(in);
+        } finally {
+            in.close();
+        }
     }
 
-    public void remove(String key) throws Exception {
-        mSimpleDiskCache.remove(key);
-        if (sLogEnabled) {
-            Log.d(LOG_TAG, "[REMOVED] : " + key);
+    /**
+     * @return the stored value bytes, decrypted if they are encrypted
+     */
+    private InputStream decryptingStream(String key, SimpleDiskCache.InputStreamEntry entry) throws Exception {
+        InputStream in = entry.getInputStream();
+        if (!isEncrypted(entry.getMetadata())) {
+            return in;
         }
+        if (mEncrypterDecrypter instanceof StreamingEncrypterDecrypter) {
+            return ((StreamingEncrypterDecrypter) mEncrypterDecrypter).getCipherInputStream(in, key);
+        }
+        return new ByteArrayInputStream(mEncrypterDecrypter.decrypt(ByteStreams.toByteArray(in), key));
     }
 
-    public void remove(String key, RemoveCallback callback) {
-        new RemoveTask(key, callback).execute();
+    /**
+     * @return out, wrapped in a cipher stream if values are encrypted and metadata isn't flagged as
+     *         encrypted already
+     */
+    private OutputStream encryptingStream(OutputStream out, String key, EntryMetadata metadata) throws Exception {
+        if (!sEncryptionEnabled || metadata.hasFlag(EntryMetadata.FLAG_ENCRYPTED)) {
+            return out;
+        }
+        metadata.setFlag(EntryMetadata.FLAG_ENCRYPTED, true);
+        return ((StreamingEncrypterDecrypter) mEncrypterDecrypter).getCipherOutputStream(out, key);
     }
 
-    public boolean contains(String key) throws IOException {
-        return mSimpleDiskCache.contains(key);
+    /**
+     * True unless values are encrypted with an {@link EncrypterDecrypter} that only handles byte
+     * arrays.
+     */
+    private boolean canEncryptStreams() {
+        return !sEncryptionEnabled || mEncrypterDecrypter instanceof StreamingEncrypterDecrypter;
     }
 
-    public void removeAll() throws Exception {
-        mSimpleDiskCache.clear();
-        if (sLogEnabled) {
-            Log.d(LOG_TAG, "[ALL CLEARED]");
+    /**
+     * Discards a failed write. valueOut is closed to release its cipher, what it still writes goes
+     * nowhere because out is closed first.
+     */
+    private static void abort(SimpleDiskCache.CacheOutputStream out, OutputStream valueOut) throws IOException {
+        out.abort();
+        if (valueOut != out) {
+            Closeables.close(valueOut, true);
+        }
+    }
+
+    /**
+     * @return when the entry is due for a reload, or Long.MAX_VALUE if refresh ahead is disabled
+     */
+    private long refreshTime(EntryMetadata metadata) {
+        double fraction = mRefreshAheadFraction;
+        long createdAt = metadata.getCreatedAt();
+        long timeSpan = metadata.getTimeSpan();
+        if (fraction == 0 || createdAt == EntryMetadata.UNKNOWN || timeSpan <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return createdAt + (long) (timeSpan * fraction);
+    }
+
+    /**
+     * Values due for a reload are read from disk, which is where reloads are started.
+     */
+    private long memoryEvictionTime(EntryMetadata metadata) {
+        return Math.min(metadata.getEvictionTime(), refreshTime(metadata));
+    }
+
+    /**
+     * Loads key on the cache executor and writes it like the entry read from metadata, with the
+     * same serializer and type, evictionTimeSpan and expire after access setting. Does nothing if
+     * a reload of key is already queued or running.
+     */
+    private void refreshAhead(final String key, final Loader<?> loader, final ValueType<?> type,
+            final Serializer serializer, EntryMetadata metadata) {
+        final long evictionTimeSpan = metadata.getTimeSpan();
+        final boolean expireAfterAccess = metadata.getExpireAfterAccess() > 0;
+        if (!mRefreshing.add(key)) {
+            return;
+        }
+        try {
+            executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        mLoads.execute(key, type != null ? type.getType() : null, new Callable<Object>() {
+                            @Override
+                            public Object call() throws Exception {
+                                Object value = loader.load(key);
+                                if (value != null) {
+                                    writeEntry(key, value, type, evictionTimeSpan, expireAfterAccess, serializer);
+                                }
+                                return value;
+                            }
+                        });
+                        if (sLogEnabled) {
+                            Log.d(LOG_TAG, "[REFRESHED] : " + key);
+                        }
+                    } catch (Exception e) {
+                        if (sLogEnabled) {
+                            Log.d(LOG_TAG, "[REFRESH FAILED] : " + key + " " + e);
+                        }
+                    } finally {
+                        mRefreshing.remove(key);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the entry is reloaded by a later read
+            mRefreshing.remove(key);
+        }
+    }
+
+    private void clearMemoryCache() {
+        MemoryCache memoryCache = mMemoryCache;
+        if (memoryCache != null) {
+            memoryCache.clear();
+        }
+    }
+
+    private void removeFromMemoryCache(String key) {
+        MemoryCache memoryCache = mMemoryCache;
+        if (memoryCache != null) {
+            memoryCache.remove(key);
+        }
+    }
+
+    /**
+     * Writes value as type with the serializers that can, see {@link GsonSerializer}.
+     */
+    private static void serialize(Serializer serializer, Object value, ValueType<?> type, OutputStream out)
+            throws IOException {
+        if (type != null && serializer instanceof GsonSerializer) {
+            ((GsonSerializer) serializer).serialize(value, type, out);
+        } else {
+            serializer.serialize(value, out);
+        }
+    }
+
+    /**
+     * Reads with the adapter type remembers from the serializers that have one.
+     */
+    private static <T> T deserialize(Serializer serializer, InputStream in, ValueType<T> type) throws IOException {
+        if (serializer instanceof GsonSerializer) {
+            return ((GsonSerializer) serializer).deserialize(in, type);
+        }
+        return serializer.deserialize(in, type.getType());
+    }
+
+    private Serializer getSerializer(EntryMetadata metadata) throws IOException {
+        // entries from before serializers were recorded are json
+        int id = metadata.getCodecId() == EntryMetadata.CODEC_UNSPECIFIED ? GsonSerializer.ID : metadata
+                .getCodecId();
+        if (id == EntryMetadata.CODEC_RAW) {
+            throw new IOException("Entry was stored with putBytes, read it with getBytes");
+        }
+        Serializer serializer = id > 0 ? mSerializers[id] : null;
+        if (serializer == null) {
+            throw new IOException("No serializer registered for codec id " + id);
+        }
+        return serializer;
+    }
+
+    private boolean isEncrypted(EntryMetadata metadata) throws IOException {
+        boolean encrypted = metadata.isLegacy() ? sEncryptionEnabled : metadata.hasFlag(EntryMetadata.FLAG_ENCRYPTED);
+        if (encrypted && mEncrypterDecrypter == null) {
+            throw new IOException("Entry is encrypted but no EncrypterDecrypter is configured");
         }
+        return encrypted;
     }
 
     private Long getEvictionTime(Long evictionTimeSpan) {
-        return System.currentTimeMillis() + evictionTimeSpan;
+        return Clock.now() + evictionTimeSpan;
+    }
+
+    /**
+     * @return the disk cache, after waiting up to the ready timeout if it is being opened by initAsync
+     */
+    private SimpleDiskCache cache() throws IOException {
+        SimpleDiskCache cache = mSimpleDiskCache;
+        if (cache != null) {
+            return cache;
+        }
+        FutureTask<Void> opening = mOpening;
+        if (opening == null) {
+            throw new IllegalStateException("init() was not called");
+        }
+        long start = System.nanoTime();
+        try {
+            opening.get(mReadyTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new InterruptedIOException("Cache not open after " + mReadyTimeoutMillis + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the cache to open");
+        } catch (ExecutionException e) {
+            throw new IOException("Cache could not be opened", e.getCause());
+        } finally {
+            mReadyWaitCount.incrementAndGet();
+            mReadyWaitNanos.addAndGet(System.nanoTime() - start);
+        }
+        cache = mSimpleDiskCache;
+        if (cache == null) {
+            // init() or initAsync() was called again meanwhile
+            return cache();
+        }
+        return cache;
+    }
+
+    /**
+     * Like {@link #cache()}, for methods that can't throw IOException.
+     */
+    private SimpleDiskCache openedCache() {
+        try {
+            return cache();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized CacheExecutor executor() {
+        if (mExecutor == null) {
+            mExecutor = new CacheExecutor(DEFAULT_ASYNC_POOL_SIZE, DEFAULT_ASYNC_QUEUE_CAPACITY,
+                    Process.THREAD_PRIORITY_BACKGROUND);
+        }
+        return mExecutor;
+    }
+
+    private void execute(CallbackTask<?> task) {
+        try {
+            executor().execute(task);
+        } catch (RejectedExecutionException e) {
+            task.deliver(null, e);
+        }
+    }
+
+    /**
+     * Creates caches that are independent of {@link #getInstance()} and of each other, each in its
+     * own dir named after it, with its own size budget, settings and locks. Close a cache before
+     * building another one with the same name.
+     */
+    public static final class Builder {
+
+        private final Context      mContext;
+        private final String       mName;
+        private final long         mMaxSize;
+        private Serializer         mSerializer;
+        private boolean            mEncryptionEnabled;
+        private EncrypterDecrypter mEncrypterDecrypter;
+        private int                mShardCount = 1;
+        private KeyHasher          mKeyHasher  = KeyHasher.MURMUR3;
+        private long               mMemoryCacheSize;
+        private Compressor         mCompressor;
+        private int                mCompressionThreshold;
+        private long               mMaxEntrySize;
+        private long               mLargeEntryMaxSize;
+
+        /**
+         * @param context
+         * @param name letters, digits, '-' and '_'
+         * @param maxSize of the cache on disk, in bytes
+         */
+        public Builder(Context context, String name, long maxSize) {
+            if (name == null || !name.matches("[A-Za-z0-9_-]+")) {
+                throw new IllegalArgumentException("Invalid cache name " + name);
+            }
+            mContext = context;
+            mName = name;
+            mMaxSize = maxSize;
+        }
+
+        /**
+         * @see ExpirableDiskLruCache#setSerializer(Serializer)
+         */
+        public Builder setSerializer(Serializer serializer) {
+            mSerializer = serializer;
+            return this;
+        }
+
+        /**
+         * Encrypts entries with {@link EncrypterDecrypterConcealImpl}.
+         */
+        public Builder setEncryptionEnabled(boolean encryptionEnabled) {
+            mEncryptionEnabled = encryptionEnabled;
+            return this;
+        }
+
+        /**
+         * Encrypts entries with encrypterDecrypter.
+         */
+        public Builder setEncrypterDecrypter(EncrypterDecrypter encrypterDecrypter) {
+            mEncryptionEnabled = encrypterDecrypter != null;
+            mEncrypterDecrypter = encrypterDecrypter;
+            return this;
+        }
+
+        /**
+         * @see ExpirableDiskLruCache#init(Context, Long, boolean, boolean, EncrypterDecrypter, int)
+         */
+        public Builder setShardCount(int shardCount) {
+            mShardCount = shardCount;
+            return this;
+        }
+
+        /**
+         * @see ExpirableDiskLruCache#setKeyHasher(KeyHasher)
+         */
+        public Builder setKeyHasher(KeyHasher keyHasher) {
+            mKeyHasher = keyHasher;
+            return this;
+        }
+
+        /**
+         * @see ExpirableDiskLruCache#setMemoryCacheSize(long)
+         */
+        public Builder setMemoryCacheSize(long maxSizeBytes) {
+            mMemoryCacheSize = maxSizeBytes;
+            return this;
+        }
+
+        /**
+         * @see ExpirableDiskLruCache#setCompressor(Compressor, int)
+         */
+        public Builder setCompressor(Compressor compressor, int thresholdBytes) {
+            mCompressor = compressor;
+            mCompressionThreshold = thresholdBytes;
+            return this;
+        }
+
+        /**
+         * @see ExpirableDiskLruCache#setMaxEntrySize(long, long)
+         */
+        public Builder setMaxEntrySize(long maxEntrySizeBytes, long largeEntryMaxSizeBytes) {
+            mMaxEntrySize = maxEntrySizeBytes;
+            mLargeEntryMaxSize = largeEntryMaxSizeBytes;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException if a cache with this name is open
+         */
+        public ExpirableDiskLruCache build() throws Exception {
+            ExpirableDiskLruCache cache = new ExpirableDiskLruCache();
+            if (mSerializer != null) {
+                cache.setSerializer(mSerializer);
+            }
+            cache.setKeyHasher(mKeyHasher);
+            cache.setMemoryCacheSize(mMemoryCacheSize);
+            cache.setCompressor(mCompressor, mCompressionThreshold);
+            cache.publish(cache.open(mContext, mContext.getDir(DIR_PREFIX + mName, Context.MODE_PRIVATE), mMaxSize,
+                    mEncryptionEnabled, mEncrypterDecrypter, mShardCount));
+            if (mMaxEntrySize > 0) {
+                cache.setMaxEntrySize(mMaxEntrySize, mLargeEntryMaxSize);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Pushes out the eviction time on disk of entries that expire after access. Reads only record
+     * the new eviction time of the key, and a task on the cache executor writes the latest one of
+     * each key. Entries whose eviction time on disk is within 1/16th of their span of the new one
+     * aren't rewritten, so a hot entry costs at most one metadata write per 1/16th of its span.
+     */
+    private final class AccessExpiry implements MemoryCache.AccessListener, Runnable {
+
+        private static final int                      SLACK_DIVISOR = 16;
+
+        private final ConcurrentHashMap<String, Long> mPending      = new ConcurrentHashMap<>();
+        private final AtomicBoolean                   mScheduled    = new AtomicBoolean();
+
+        @Override
+        public void onAccess(String key, long evictionTime, long expireAfterAccess) {
+            SimpleDiskCache cache = mSimpleDiskCache;
+            if (cache == null) {
+                return;
+            }
+            long onDisk = cache.peekEvictionTime(key);
+            if (onDisk == ExpiryIndex.ABSENT || onDisk >= evictionTime - expireAfterAccess / SLACK_DIVISOR) {
+                return;
+            }
+            mPending.put(key, evictionTime);
+            if (mScheduled.compareAndSet(false, true)) {
+                try {
+                    executor().execute(this);
+                } catch (RejectedExecutionException e) {
+                    // the next read schedules it again
+                    mScheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            mScheduled.set(false);
+            for (Map.Entry<String, Long> touch : mPending.entrySet()) {
+                String key = touch.getKey();
+                long evictionTime = touch.getValue();
+                mPending.remove(key, evictionTime);
+                try {
+                    if (cache().touch(key, evictionTime) && sLogEnabled) {
+                        Log.d(LOG_TAG, "[TOUCHED] : " + key);
+                    }
+                } catch (IOException e) {
+                    if (sLogEnabled) {
+                        Log.d(LOG_TAG, "[TOUCH FAILED] : " + key + " " + e);
+                    }
+                }
+            }
+        }
     }
 
     private static class LazyHolder {
@@ -174,12 +1781,48 @@ public class ExpirableDiskLruCache {
     }
 
     /**
-     * AsyncTask to perform put operation in a background thread.
+     * Runs an operation on the cache executor and reports its outcome on the main thread.
+     */
+    private static abstract class CallbackTask<T> implements Runnable {
+
+        @Override
+        public void run() {
+            T result = null;
+            Exception exception = null;
+            try {
+                result = call();
+            } catch (Exception e) {
+                exception = e;
+            }
+            deliver(result, exception);
+        }
+
+        void deliver(final T result, final Exception exception) {
+            MainThread.HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (exception == null) {
+                        onSuccess(result);
+                    } else {
+                        onFailure(exception);
+                    }
+                }
+            });
+        }
+
+        abstract T call() throws Exception;
+
+        abstract void onSuccess(T result);
+
+        abstract void onFailure(Exception e);
+    }
+
+    /**
+     * Performs put operation on this cache in a background thread.
      */
-    private static class PutTask extends AsyncTask<Void, Void, Void> {
+    private class PutTask extends CallbackTask<Void> {
         private final String      mKey;
         private final Long        mEvictionTimeSpan;
-        private Exception         mException;
         private final PutCallback mCallback;
         final Object              mValue;
 
@@ -188,107 +1831,132 @@ public class ExpirableDiskLruCache {
             mEvictionTimeSpan = evictionTimeSpan;
             mCallback = callback;
             mValue = value;
-            mException = null;
         }
 
         @Override
-        protected Void doInBackground(Void... params) {
-            try {
-                getInstance().put(mKey, mValue, mEvictionTimeSpan);
-            } catch (Exception e) {
-                mException = e;
-            }
+        Void call() throws Exception {
+            put(mKey, mValue, mEvictionTimeSpan);
             return null;
         }
 
         @Override
-        protected void onPostExecute(Void aVoid) {
+        void onSuccess(Void result) {
             if (mCallback != null) {
-                if (mException == null) {
-                    mCallback.onSuccess();
-                } else {
-                    mCallback.onFailure(mException);
-                }
+                mCallback.onSuccess();
+            }
+        }
+
+        @Override
+        void onFailure(Exception e) {
+            if (mCallback != null) {
+                mCallback.onFailure(e);
             }
         }
     }
 
     /**
-     * AsyncTask to perform get operation in a background thread.
+     * Performs get operation on this cache in a background thread.
      */
-    private static class GetTask<T> extends AsyncTask<Void, Void, T> {
+    private class GetTask<T> extends CallbackTask<T> {
 
-        private final String      mKey;
-        private final GetCallback mCallback;
-        private final Class<T>    mClassOfT;
-        private Exception         mException;
+        private final String         mKey;
+        private final GetCallback<T> mCallback;
+        private final Class<T>       mClassOfT;
 
         private GetTask(String key, Class<T> classOfT, GetCallback<T> callback) {
             mKey = key;
             mCallback = callback;
             mClassOfT = classOfT;
-            mException = null;
         }
 
         @Override
-        protected T doInBackground(Void... params) {
-            try {
-                return getInstance().get(mKey, mClassOfT);
-            } catch (Exception e) {
-                mException = e;
-                return null;
+        T call() throws Exception {
+            return get(mKey, mClassOfT);
+        }
+
+        @Override
+        void onSuccess(T result) {
+            if (mCallback != null) {
+                mCallback.onSuccess(result);
             }
         }
 
         @Override
-        protected void onPostExecute(T object) {
+        void onFailure(Exception e) {
             if (mCallback != null) {
-                if (mException == null) {
-                    mCallback.onSuccess(object);
-                } else {
-                    mCallback.onFailure(mException);
-                }
+                mCallback.onFailure(e);
             }
         }
     }
 
     /**
-     * AsyncTask to perform delete operation in a background thread.
+     * Performs delete operation on this cache in a background thread.
      */
-    private static class RemoveTask extends AsyncTask<Void, Void, Void> {
+    private class RemoveTask extends CallbackTask<Void> {
 
         private final String         mKey;
         private final RemoveCallback mCallback;
-        private Exception            mException;
 
         private RemoveTask(String key, RemoveCallback callback) {
             mKey = key;
             mCallback = callback;
-            mException = null;
         }
 
         @Override
-        protected Void doInBackground(Void... params) {
-            try {
-                getInstance().remove(mKey);
-            } catch (Exception e) {
-                mException = e;
-            }
+        Void call() throws Exception {
+            remove(mKey);
             return null;
         }
 
         @Override
-        protected void onPostExecute(Void aVoid) {
+        void onSuccess(Void result) {
             if (mCallback != null) {
-                if (mException == null) {
-                    mCallback.onSuccess();
-                } else {
-                    mCallback.onFailure(mException);
-                }
+                mCallback.onSuccess();
+            }
+        }
+
+        @Override
+        void onFailure(Exception e) {
+            if (mCallback != null) {
+                mCallback.onFailure(e);
             }
         }
     }
 
+    /**
+     * Counts the bytes written through it, which are the serialized size of a value.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long mCount;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            mCount += len;
+        }
+    }
+
+    private static class MainThread {
+        private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+    }
+
+    public interface Loader<T> {
+        /**
+         * @return the value of key, or null if it has none
+         */
+        public T load(String key) throws Exception;
+    }
+
     public interface RemoveCallback {
         public void onSuccess();
 
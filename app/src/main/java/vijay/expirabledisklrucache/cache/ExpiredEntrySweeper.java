@@ -0,0 +1,133 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.os.Process;
+
+/**
+ * Removes expired entries in the background, so they stop taking up space in the LRU budget
+ * before anyone reads them.
+ *
+ * Eviction times are fed into a {@link TimingWheel} as the {@link SimpleDiskCache} learns them.
+ * Every tick the wheel is advanced and at most {@code maxRemovalsPerTick} due entries are removed,
+ * the rest wait for the next tick. Entries that were on disk before the sweeper started have their
+ * metadata read from the same per tick budget.
+ */
+final class ExpiredEntrySweeper implements SimpleDiskCache.EvictionTimeListener, Runnable {
+
+    private static final int         WHEEL_BITS       = 6;
+    private static final int         WHEEL_LEVELS     = 4;
+
+    private final SimpleDiskCache    mCache;
+    private final long               mTickMillis;
+    private final int                mMaxRemovalsPerTick;
+    private final TimingWheel        mWheel;
+    private final ArrayDeque<String> mDue             = new ArrayDeque<>();
+    private final List<String>       mBatch           = new ArrayList<>();
+    private ScheduledExecutorService mExecutor;
+    private String[]                 mBackfill;
+    private int                      mBackfillPosition;
+
+    private final AtomicLong         mSweepCount      = new AtomicLong();
+    private final AtomicLong         mRemovedCount    = new AtomicLong();
+    private final AtomicLong         mTotalSweepNanos = new AtomicLong();
+    private final AtomicLong         mLastSweepNanos  = new AtomicLong();
+
+    ExpiredEntrySweeper(SimpleDiskCache cache, long tickMillis, int maxRemovalsPerTick) {
+        if (tickMillis <= 0 || maxRemovalsPerTick <= 0) {
+            throw new IllegalArgumentException("tickMillis and maxRemovalsPerTick must be positive");
+        }
+        mCache = cache;
+        mTickMillis = tickMillis;
+        mMaxRemovalsPerTick = maxRemovalsPerTick;
+        mWheel = new TimingWheel(tickMillis, WHEEL_BITS, WHEEL_LEVELS, Clock.now());
+    }
+
+    synchronized void start() {
+        mBackfill = mCache.listInternalKeys();
+        mBackfillPosition = 0;
+        mCache.setEvictionTimeListener(this);
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new CacheThreadFactory("sweeper",
+                Process.THREAD_PRIORITY_BACKGROUND, true));
+        mExecutor.scheduleWithFixedDelay(this, mTickMillis, mTickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        mCache.setEvictionTimeListener(null);
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+        mWheel.clear();
+        mDue.clear();
+    }
+
+    @Override
+    public synchronized void onEvictionTimeKnown(String internalKey, long evictionTime) {
+        mWheel.schedule(internalKey, evictionTime, mDue);
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        long now = Clock.now();
+        List<String> batch = mBatch;
+        String[] backfill;
+        int backfillFrom;
+        int backfillTo;
+        synchronized (this) {
+            mWheel.advance(now, mDue);
+            while (batch.size() < mMaxRemovalsPerTick && !mDue.isEmpty()) {
+                batch.add(mDue.poll());
+            }
+            backfill = mBackfill;
+            backfillFrom = backfill == null ? 0 : mBackfillPosition;
+            backfillTo = backfill == null ? 0 : Math.min(backfill.length,
+                    backfillFrom + mMaxRemovalsPerTick - batch.size());
+            mBackfillPosition = backfillTo;
+            if (backfill != null && backfillTo == backfill.length) {
+                mBackfill = null;
+            }
+        }
+        if (batch.isEmpty() && backfillFrom == backfillTo) {
+            return;
+        }
+        try {
+            for (String internalKey : batch) {
+                try {
+                    if (mCache.removeIfExpired(internalKey, now)) {
+                        mRemovedCount.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    onEvictionTimeKnown(internalKey, now + mTickMillis);
+                }
+            }
+            for (int i = backfillFrom; i < backfillTo; i++) {
+                try {
+                    // schedules the entry through onEvictionTimeKnown
+                    mCache.learnEvictionTime(backfill[i]);
+                } catch (IOException e) {
+                    // it will be learned when it is read
+                }
+            }
+        } finally {
+            batch.clear();
+            long duration = System.nanoTime() - start;
+            mSweepCount.incrementAndGet();
+            mTotalSweepNanos.addAndGet(duration);
+            mLastSweepNanos.set(duration);
+        }
+    }
+
+    synchronized SweeperStats stats() {
+        return new SweeperStats(mSweepCount.get(), mRemovedCount.get(), mTotalSweepNanos.get(),
+                mLastSweepNanos.get(), mWheel.size(), mDue.size());
+    }
+}
@@ -0,0 +1,191 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * In memory index from internal key to eviction time, so that misses and expired entries can be
+ * answered without touching the disk.
+ *
+ * Internal keys are 128 bit hex strings and are stored as two longs, next to the eviction time,
+ * in open addressed primitive arrays. Each slot also remembers the eviction epoch in which the
+ * entry was last known to be on disk, see {@link SimpleDiskCache}.
+ *
+ * Not thread safe, callers synchronize on the index.
+ */
+final class ExpiryIndex {
+
+    /** Returned by {@link #get} when the key has no entry on disk. */
+    static final long         ABSENT       = Long.MIN_VALUE;
+
+    /** Returned by {@link #get} when the entry exists but its metadata hasn't been read yet. */
+    static final long         UNKNOWN      = Long.MIN_VALUE + 1;
+
+    private static final byte FREE         = 0;
+    private static final byte USED         = 1;
+    private static final byte DELETED      = 2;
+
+    private static final int  MIN_CAPACITY = 16;
+
+    private final long[]      mKey         = new long[2];
+    private long[]            mHigh;
+    private long[]            mLow;
+    private long[]            mEvictionTimes;
+    private int[]             mEpochs;
+    private byte[]            mStates;
+    private int               mSize;
+    private int               mDeleted;
+
+    ExpiryIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the eviction time of key, {@link #ABSENT}, or {@link #UNKNOWN} which is also
+     *         returned for keys that can't be indexed
+     */
+    long get(String key) {
+        if (!parseKey(key, mKey)) {
+            return UNKNOWN;
+        }
+        int slot = find(mKey[0], mKey[1]);
+        return slot < 0 ? ABSENT : mEvictionTimes[slot];
+    }
+
+    /**
+     * @return the epoch in which key was last seen on disk, or -1 if it isn't indexed
+     */
+    int getEpoch(String key) {
+        if (!parseKey(key, mKey)) {
+            return -1;
+        }
+        int slot = find(mKey[0], mKey[1]);
+        return slot < 0 ? -1 : mEpochs[slot];
+    }
+
+    void setEpoch(String key, int epoch) {
+        if (parseKey(key, mKey)) {
+            int slot = find(mKey[0], mKey[1]);
+            if (slot >= 0) {
+                mEpochs[slot] = epoch;
+            }
+        }
+    }
+
+    void put(String key, long evictionTime, int epoch) {
+        if (parseKey(key, mKey)) {
+            put(mKey[0], mKey[1], evictionTime, epoch);
+        }
+    }
+
+    void remove(String key) {
+        if (!parseKey(key, mKey)) {
+            return;
+        }
+        int slot = find(mKey[0], mKey[1]);
+        if (slot >= 0) {
+            mStates[slot] = DELETED;
+            mSize--;
+            mDeleted++;
+        }
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void put(long high, long low, long evictionTime, int epoch) {
+        int slot = find(high, low);
+        if (slot >= 0) {
+            mEvictionTimes[slot] = evictionTime;
+            mEpochs[slot] = epoch;
+            return;
+        }
+        if ((mSize + mDeleted + 1) * 4 > mStates.length * 3) {
+            // grow only if live entries need it, otherwise just purge tombstones
+            rehash(mSize * 2 >= mStates.length ? mStates.length * 2 : mStates.length);
+        }
+        int mask = mStates.length - 1;
+        int i = hash(high, low) & mask;
+        while (mStates[i] == USED) {
+            i = (i + 1) & mask;
+        }
+        if (mStates[i] == DELETED) {
+            mDeleted--;
+        }
+        mStates[i] = USED;
+        mHigh[i] = high;
+        mLow[i] = low;
+        mEvictionTimes[i] = evictionTime;
+        mEpochs[i] = epoch;
+        mSize++;
+    }
+
+    private int find(long high, long low) {
+        int mask = mStates.length - 1;
+        int i = hash(high, low) & mask;
+        while (mStates[i] != FREE) {
+            if (mStates[i] == USED && mHigh[i] == high && mLow[i] == low) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void allocate(int capacity) {
+        mHigh = new long[capacity];
+        mLow = new long[capacity];
+        mEvictionTimes = new long[capacity];
+        mEpochs = new int[capacity];
+        mStates = new byte[capacity];
+        mSize = 0;
+        mDeleted = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] high = mHigh;
+        long[] low = mLow;
+        long[] evictionTimes = mEvictionTimes;
+        int[] epochs = mEpochs;
+        byte[] states = mStates;
+        allocate(capacity);
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] == USED) {
+                put(high[i], low[i], evictionTimes[i], epochs[i]);
+            }
+        }
+    }
+
+    private static int hash(long high, long low) {
+        // keys are digests, so any of their bits are well distributed
+        long h = high ^ low;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Parses a hex internal key of up to 32 digits into {high, low}.
+     *
+     * @return false if the key is not a hex string of at most 128 bits
+     */
+    static boolean parseKey(String key, long[] out) {
+        int length = key.length();
+        if (length == 0 || length > 32) {
+            return false;
+        }
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = Character.digit(key.charAt(i), 16);
+            if (digit < 0) {
+                return false;
+            }
+            high = (high << 4) | (low >>> 60);
+            low = (low << 4) | digit;
+        }
+        out[0] = high;
+        out[1] = low;
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * Count-min sketch of how often keys were accessed recently, with 4 bit counters, after the one in
+ * Caffeine. Each key has a counter in 4 of the table's longs and its frequency is the smallest of
+ * them, so collisions can only overestimate it. Once 10 accesses per tracked key were counted all
+ * counters are halved, so keys that were popular long ago fade out.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS      = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L };
+    private static final long   RESET_MASK = 0x7777777777777777L;
+    private static final long   ONE_MASK   = 0x1111111111111111L;
+    private static final int    MAX_COUNT  = 15;
+
+    private final long[]        mTable;
+    private final int           mTableMask;
+    private final int           mSampleSize;
+    private int                 mSize;
+
+    /**
+     * @param expectedEntries number of keys the sketch should tell apart, the cache's entry count
+     */
+    FrequencySketch(int expectedEntries) {
+        if (expectedEntries <= 0) {
+            throw new IllegalArgumentException("expectedEntries must be positive");
+        }
+        int capacity = Integer.highestOneBit(Math.min(expectedEntries, 1 << 30) - 1) << 1;
+        mTable = new long[Math.max(capacity, 8)];
+        mTableMask = mTable.length - 1;
+        mSampleSize = 10 * Math.max(expectedEntries, 8);
+    }
+
+    synchronized int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((mTable[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    synchronized void increment(String key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++mSize == mSampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((mTable[index] & mask) != mask) {
+            mTable[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < mTable.length; i++) {
+            odd += Long.bitCount(mTable[i] & ONE_MASK);
+            mTable[i] = (mTable[i] >>> 1) & RESET_MASK;
+        }
+        mSize = (mSize >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & mTableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
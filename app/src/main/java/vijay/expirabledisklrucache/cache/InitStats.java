@@ -0,0 +1,50 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * How long opening the cache took, step by step, and how long operations waited for it.
+ */
+public final class InitStats {
+
+    private final long mEncryptionInitTimeNanos;
+    private final long mDiskOpenTimeNanos;
+    private final long mReadyWaitCount;
+    private final long mTotalReadyWaitTimeNanos;
+
+    InitStats(long encryptionInitTimeNanos, long diskOpenTimeNanos, long readyWaitCount,
+            long totalReadyWaitTimeNanos) {
+        mEncryptionInitTimeNanos = encryptionInitTimeNanos;
+        mDiskOpenTimeNanos = diskOpenTimeNanos;
+        mReadyWaitCount = readyWaitCount;
+        mTotalReadyWaitTimeNanos = totalReadyWaitTimeNanos;
+    }
+
+    /** Creating the default encrypter, which loads Conceal's native library. 0 without it. */
+    public long getEncryptionInitTimeNanos() {
+        return mEncryptionInitTimeNanos;
+    }
+
+    /** Opening the disk cache, mostly replaying its journals. */
+    public long getDiskOpenTimeNanos() {
+        return mDiskOpenTimeNanos;
+    }
+
+    public long getTotalInitTimeNanos() {
+        return mEncryptionInitTimeNanos + mDiskOpenTimeNanos;
+    }
+
+    /** Operations that were issued while the cache was being opened by initAsync. */
+    public long getReadyWaitCount() {
+        return mReadyWaitCount;
+    }
+
+    public long getTotalReadyWaitTimeNanos() {
+        return mTotalReadyWaitTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "InitStats{encryptionInitTimeNanos=" + mEncryptionInitTimeNanos + ", diskOpenTimeNanos="
+                + mDiskOpenTimeNanos + ", readyWaits=" + mReadyWaitCount + ", totalReadyWaitTimeNanos="
+                + mTotalReadyWaitTimeNanos + "}";
+    }
+}
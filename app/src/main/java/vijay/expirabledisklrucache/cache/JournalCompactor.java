@@ -0,0 +1,62 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Process;
+
+/**
+ * Compacts the journals of a {@link SimpleDiskCache} in the background once it has been idle for a
+ * while, so DiskLruCache doesn't rebuild them itself in the middle of a burst of operations.
+ */
+final class JournalCompactor implements Runnable {
+
+    private final SimpleDiskCache    mCache;
+    private final long               mIdleMillis;
+    private final int                mMinRedundantOps;
+    private ScheduledExecutorService mExecutor;
+
+    JournalCompactor(SimpleDiskCache cache, long idleMillis, int minRedundantOps) {
+        if (idleMillis <= 0) {
+            throw new IllegalArgumentException("idleMillis must be positive");
+        }
+        if (minRedundantOps <= 0 || minRedundantOps >= SimpleDiskCache.REBUILD_THRESHOLD) {
+            throw new IllegalArgumentException("minRedundantOps must be between 1 and "
+                    + (SimpleDiskCache.REBUILD_THRESHOLD - 1));
+        }
+        mCache = cache;
+        mIdleMillis = idleMillis;
+        mMinRedundantOps = minRedundantOps;
+    }
+
+    synchronized void start() {
+        if (!SimpleDiskCache.isCompactionSupported()) {
+            // nothing to compact on every tick
+            return;
+        }
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new CacheThreadFactory("compactor",
+                Process.THREAD_PRIORITY_BACKGROUND, true));
+        mExecutor.scheduleWithFixedDelay(this, mIdleMillis, mIdleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        if (mCache.getIdleMillis() < mIdleMillis) {
+            return;
+        }
+        try {
+            mCache.compact(mMinRedundantOps);
+        } catch (IOException e) {
+            // retried on the next idle tick
+        }
+    }
+}
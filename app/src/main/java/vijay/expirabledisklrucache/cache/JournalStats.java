@@ -0,0 +1,52 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * Snapshot of the disk cache journals and their compactions.
+ */
+public final class JournalStats {
+
+    private final long mCompactionCount;
+    private final long mTotalCompactionTimeNanos;
+    private final long mLastCompactionTimeNanos;
+    private final long mJournalBytes;
+    private final int  mRedundantOpCount;
+
+    JournalStats(long compactionCount, long totalCompactionTimeNanos, long lastCompactionTimeNanos,
+            long journalBytes, int redundantOpCount) {
+        mCompactionCount = compactionCount;
+        mTotalCompactionTimeNanos = totalCompactionTimeNanos;
+        mLastCompactionTimeNanos = lastCompactionTimeNanos;
+        mJournalBytes = journalBytes;
+        mRedundantOpCount = redundantOpCount;
+    }
+
+    /** Journals rebuilt by compaction, not counting the rebuilds DiskLruCache does itself. */
+    public long getCompactionCount() {
+        return mCompactionCount;
+    }
+
+    public long getTotalCompactionTimeNanos() {
+        return mTotalCompactionTimeNanos;
+    }
+
+    public long getLastCompactionTimeNanos() {
+        return mLastCompactionTimeNanos;
+    }
+
+    /** Size of the journals of all shards. */
+    public long getJournalBytes() {
+        return mJournalBytes;
+    }
+
+    /** Journal lines a compaction would drop, -1 if compaction isn't supported. */
+    public int getRedundantOpCount() {
+        return mRedundantOpCount;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalStats{compactions=" + mCompactionCount + ", totalCompactionTimeNanos="
+                + mTotalCompactionTimeNanos + ", lastCompactionTimeNanos=" + mLastCompactionTimeNanos
+                + ", journalBytes=" + mJournalBytes + ", redundantOps=" + mRedundantOpCount + "}";
+    }
+}
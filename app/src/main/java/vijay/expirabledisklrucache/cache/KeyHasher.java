@@ -0,0 +1,16 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * Maps cache keys to the names of their files on disk. Names must match [a-z0-9_-]{1,64}, and
+ * are looked up fastest when they are hex strings of at most 32 digits.
+ */
+public interface KeyHasher {
+
+    /** 128 bit MurmurHash3 as 32 lowercase hex digits. The default. */
+    KeyHasher MURMUR3 = new Murmur3KeyHasher();
+
+    /** MD5 in unpadded hex, the naming of entries written by older versions. */
+    KeyHasher MD5     = new Md5KeyHasher();
+
+    String hash(String key);
+}
@@ -0,0 +1,67 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * Snapshot of the latencies of one kind of operation. Percentiles are accurate to 1/16th of the
+ * value.
+ */
+public final class LatencyHistogram {
+
+    private final long[] mCounts;
+    private final long   mCount;
+    private final long   mTotalNanos;
+    private final long   mMaxNanos;
+
+    LatencyHistogram(long[] counts, long count, long totalNanos, long maxNanos) {
+        mCounts = counts;
+        mCount = count;
+        mTotalNanos = totalNanos;
+        mMaxNanos = maxNanos;
+    }
+
+    /** Operations recorded. */
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    public long getMeanNanos() {
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency that percentile of the operations didn't exceed, 0 if none were recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = 0;
+        for (long count : mCounts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyRecorder.bucketUpperBound(i), mMaxNanos);
+            }
+        }
+        return mMaxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + mCount + ", meanNanos=" + getMeanNanos() + ", p50Nanos="
+                + getPercentileNanos(50) + ", p99Nanos=" + getPercentileNanos(99) + ", maxNanos=" + mMaxNanos
+                + "}";
+    }
+}
@@ -0,0 +1,62 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of durations in nanoseconds, with log linear buckets like HdrHistogram: every
+ * power of two is split into 16 buckets, so a recorded value is off by at most 1/16th.
+ */
+final class LatencyRecorder {
+
+    static final int              SUB_BUCKET_BITS  = 4;
+    static final int              SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int              BUCKET_COUNT     = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray mCounts          = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong      mCount           = new AtomicLong();
+    private final AtomicLong      mTotalNanos      = new AtomicLong();
+    private final AtomicLong      mMaxNanos        = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        mCounts.incrementAndGet(bucketIndex(nanos));
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanos);
+        long max;
+        do {
+            max = mMaxNanos.get();
+        } while (nanos > max && !mMaxNanos.compareAndSet(max, nanos));
+    }
+
+    LatencyHistogram snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = mCounts.get(i);
+        }
+        return new LatencyHistogram(counts, mCount.get(), mTotalNanos.get(), mMaxNanos.get());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @return the largest value that falls into the bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lower = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,53 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+/**
+ * Read only view of a value, memory mapped from its file or copied onto the heap, see
+ * {@link ExpirableDiskLruCache#getMappedValue(String)}. A mapped value keeps the entry's snapshot
+ * open until the handle is closed. Closing drops the handle's reference to the buffer, the mapping
+ * itself is released once no buffer over it is reachable, as Android can't unmap a file on demand.
+ * Buffers must not be used after the handle is closed.
+ */
+public final class MappedValue implements Closeable {
+
+    private volatile ByteBuffer                    mBuffer;
+    private final boolean                          mMapped;
+    private final SimpleDiskCache.InputStreamEntry mEntry;
+
+    /**
+     * @param entry the entry buffer was mapped from, closed with the handle, or null if buffer is
+     *            a copy
+     */
+    MappedValue(ByteBuffer buffer, SimpleDiskCache.InputStreamEntry entry) {
+        mBuffer = buffer.asReadOnlyBuffer();
+        mMapped = entry != null;
+        mEntry = entry;
+    }
+
+    /**
+     * @return a read only buffer over the whole value, positioned at its start
+     * @throws IllegalStateException if the handle was closed
+     */
+    public ByteBuffer getBuffer() {
+        ByteBuffer buffer = mBuffer;
+        if (buffer == null) {
+            throw new IllegalStateException("Mapped value was closed");
+        }
+        return buffer.duplicate();
+    }
+
+    /** Whether the value is mapped from its file rather than copied onto the heap. */
+    public boolean isMapped() {
+        return mMapped;
+    }
+
+    @Override
+    public void close() {
+        mBuffer = null;
+        if (mEntry != null) {
+            mEntry.close();
+        }
+    }
+}
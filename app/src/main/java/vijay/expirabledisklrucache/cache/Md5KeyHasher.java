@@ -0,0 +1,37 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The original key naming, MD5 as unpadded hex. Digests are kept per thread.
+ */
+final class Md5KeyHasher implements KeyHasher {
+
+    private static final ThreadLocal<MessageDigest> sDigest = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new AssertionError();
+            }
+        }
+    };
+
+    @Override
+    public String hash(String key) {
+        try {
+            MessageDigest m = sDigest.get();
+            m.reset();
+            m.update(key.getBytes("UTF-8"));
+            byte[] digest = m.digest();
+            BigInteger bigInt = new BigInteger(1, digest);
+            return bigInt.toString(16);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import vijay.expirabledisklrucache.cache.serializer.ValueType;
+
+/**
+ * Byte bounded in memory LRU of already deserialized values, sitting in front of the disk cache.
+ * Sizes are the serialized sizes of the values, which is what the caller knows cheaply and is
+ * proportional to the memory held by the object graph.
+ *
+ * Values are shared, so objects returned from here must be treated as immutable by callers.
+ */
+final class MemoryCache {
+
+    /** Rough per entry bookkeeping cost (map node, entry object, key). */
+    private static final int                   ENTRY_OVERHEAD = 64;
+
+    private final long                         mMaxSize;
+    private final LinkedHashMap<String, Entry> mEntries       = new LinkedHashMap<>(16, 0.75f, true);
+    private long                               mSize;
+    private long                               mHitCount;
+    private long                               mMissCount;
+    private long                               mEvictionCount;
+    private long                               mGeneration;
+    private final AccessListener               mAccessListener;
+
+    MemoryCache(long maxSize, AccessListener accessListener) {
+        mMaxSize = maxSize;
+        mAccessListener = accessListener;
+    }
+
+    /**
+     * Returns the value cached for key if it is an instance of the raw type of {@code type} and
+     * has not expired at {@code now}. Expired values are dropped. Values that expire after access
+     * have their eviction time pushed out, and the {@link AccessListener} is told outside the lock.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String key, ValueType<T> type, long now) {
+        Object value;
+        long expireAfterAccess;
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry == null) {
+                mMissCount++;
+                return null;
+            }
+            if (now > entry.evictionTime) {
+                removeEntry(key);
+                mMissCount++;
+                return null;
+            }
+            if (!type.getRawType().isInstance(entry.value)) {
+                mMissCount++;
+                return null;
+            }
+            mHitCount++;
+            value = entry.value;
+            expireAfterAccess = entry.expireAfterAccess;
+            if (expireAfterAccess > 0) {
+                entry.evictionTime = now + expireAfterAccess;
+            }
+        }
+        if (expireAfterAccess > 0) {
+            mAccessListener.onAccess(key, now + expireAfterAccess, expireAfterAccess);
+        }
+        // only the raw type can be checked, generic arguments are taken on trust as Gson does
+        return (T) value;
+    }
+
+    /**
+     * Changes whenever a value is written or removed. A reader that loaded a value from disk only
+     * caches it if nothing changed in between, see {@link #putIfUnchanged}.
+     */
+    synchronized long generation() {
+        return mGeneration;
+    }
+
+    synchronized void putIfUnchanged(String key, Object value, long serializedSize, long evictionTime,
+            long expireAfterAccess, long generation) {
+        if (generation == mGeneration) {
+            put(key, value, serializedSize, evictionTime, expireAfterAccess);
+        }
+    }
+
+    /**
+     * @param expireAfterAccess how far every hit pushes the eviction time out, 0 to keep it fixed
+     */
+    synchronized void put(String key, Object value, long serializedSize, long evictionTime, long expireAfterAccess) {
+        mGeneration++;
+        long size = serializedSize + key.length() * 2 + ENTRY_OVERHEAD;
+        removeEntry(key);
+        if (value == null || size > mMaxSize) {
+            return;
+        }
+        mEntries.put(key, new Entry(value, size, evictionTime, expireAfterAccess));
+        mSize += size;
+        trimToSize();
+    }
+
+    synchronized void remove(String key) {
+        mGeneration++;
+        removeEntry(key);
+    }
+
+    synchronized void clear() {
+        mGeneration++;
+        mEntries.clear();
+        mSize = 0;
+    }
+
+    synchronized long size() {
+        return mSize;
+    }
+
+    long maxSize() {
+        return mMaxSize;
+    }
+
+    synchronized long hitCount() {
+        return mHitCount;
+    }
+
+    synchronized long missCount() {
+        return mMissCount;
+    }
+
+    synchronized long evictionCount() {
+        return mEvictionCount;
+    }
+
+    private void removeEntry(String key) {
+        Entry previous = mEntries.remove(key);
+        if (previous != null) {
+            mSize -= previous.size;
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            mSize -= eldest.size;
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * Told about hits on values that expire after access, so their eviction time on disk can be
+     * pushed out as well.
+     */
+    interface AccessListener {
+        void onAccess(String key, long evictionTime, long expireAfterAccess);
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long   size;
+        long         evictionTime;
+        final long   expireAfterAccess;
+
+        Entry(Object value, long size, long evictionTime, long expireAfterAccess) {
+            this.value = value;
+            this.size = size;
+            this.evictionTime = evictionTime;
+            this.expireAfterAccess = expireAfterAccess;
+        }
+    }
+}
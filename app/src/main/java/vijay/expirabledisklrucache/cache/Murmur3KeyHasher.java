@@ -0,0 +1,95 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * MurmurHash3 x64 128 over the UTF-16 code units of the key, formatted as 32 lowercase hex
+ * digits. Hashing the chars directly means no bytes are encoded and nothing but the result is
+ * allocated.
+ */
+final class Murmur3KeyHasher implements KeyHasher {
+
+    private static final long   C1     = 0x87c37b91114253d5L;
+    private static final long   C2     = 0x4cf5ad432745937fL;
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    @Override
+    public String hash(String key) {
+        int length = key.length();
+        long h1 = 0;
+        long h2 = 0;
+        int i = 0;
+        // 16 bytes, 8 chars, per block
+        for (; i + 8 <= length; i += 8) {
+            long k1 = chars(key, i);
+            long k2 = chars(key, i + 4);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        int remaining = length - i;
+        for (int j = remaining - 1; j >= 4; j--) {
+            k2 = (k2 << 16) | key.charAt(i + j);
+        }
+        for (int j = Math.min(remaining, 4) - 1; j >= 0; j--) {
+            k1 = (k1 << 16) | key.charAt(i + j);
+        }
+        if (remaining > 4) {
+            h2 ^= mixK2(k2);
+        }
+        if (remaining > 0) {
+            h1 ^= mixK1(k1);
+        }
+        long byteLength = length * 2L;
+        h1 ^= byteLength;
+        h2 ^= byteLength;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        char[] hex = new char[32];
+        toHex(h1, hex, 0);
+        toHex(h2, hex, 16);
+        return new String(hex);
+    }
+
+    /** Four chars as a little endian long. */
+    private static long chars(String key, int offset) {
+        return key.charAt(offset) | (long) key.charAt(offset + 1) << 16 | (long) key.charAt(offset + 2) << 32
+                | (long) key.charAt(offset + 3) << 48;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static void toHex(long value, char[] out, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            out[offset + i] = DIGITS[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
@@ -1,23 +1,36 @@
 package vijay.expirabledisklrucache.cache;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FilterOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.FileOutputStream;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 import vijay.expirabledisklrucache.cache.utils.ByteStreams;
 import vijay.expirabledisklrucache.cache.utils.Closeables;
@@ -37,199 +50,1635 @@ class SimpleDiskCache {
     private static final int                          METADATA_IDX = 1;
     private static final List<File>                   sUsedDirs    = new ArrayList<File>();
 
-    private com.jakewharton.disklrucache.DiskLruCache mDiskLruCache;
+    private static final String                       METADATA_SUFFIX = "." + METADATA_IDX;
+    private static final String                       SHARD_PREFIX    = "shard-";
+    static final String                               JOURNAL_FILE    = "journal";
+    static final String                               KEYS_MARKER     = "keyhasher";
+    private static final String                       LEGACY_KEYS     = "keyhasher-legacy";
+    private static final String                       LARGE_ENTRY_DIR = "large-entries";
+
+    /** Names DiskLruCache accepts as keys, see {@link KeyHasher}. */
+    private static final Pattern                      KEY_PATTERN     = Pattern.compile("[a-z0-9_-]{1,64}");
+
+    /**
+     * DiskLruCache rebuilds a journal itself, while holding its lock, once this many redundant
+     * lines have piled up.
+     */
+    static final int                                  REBUILD_THRESHOLD = 2000;
+
+    /** DiskLruCache's private rebuildJournal() and redundantOpCount, null if they can't be reached. */
+    private static final Method                       sRebuildJournal;
+    private static final Field                        sRedundantOpCount;
+
+    /** DiskLruCache's private access ordered map of entries, null if it can't be reached. */
+    private static final Field                        sLruEntries;
+
+    /**
+     * The entry of a DiskLruCache editor and the file its value is written to until the edit is
+     * committed, null if they can't be reached.
+     */
+    private static final Field                        sEditorEntry;
+    private static final Method                       sDirtyFile;
+
+    /** DiskLruCache's private journal writer, null if it can't be reached. */
+    private static final Field                        sJournalWriter;
+
+    static {
+        Method rebuildJournal = null;
+        Field redundantOpCount = null;
+        try {
+            rebuildJournal = DiskLruCache.class.getDeclaredMethod("rebuildJournal");
+            rebuildJournal.setAccessible(true);
+            redundantOpCount = DiskLruCache.class.getDeclaredField("redundantOpCount");
+            redundantOpCount.setAccessible(true);
+        } catch (Exception e) {
+            rebuildJournal = null;
+            redundantOpCount = null;
+        }
+        sRebuildJournal = rebuildJournal;
+        sRedundantOpCount = redundantOpCount;
+
+        Field lruEntries;
+        try {
+            lruEntries = DiskLruCache.class.getDeclaredField("lruEntries");
+            lruEntries.setAccessible(true);
+        } catch (Exception e) {
+            lruEntries = null;
+        }
+        sLruEntries = lruEntries;
+
+        Field editorEntry = null;
+        Method dirtyFile = null;
+        try {
+            editorEntry = DiskLruCache.Editor.class.getDeclaredField("entry");
+            editorEntry.setAccessible(true);
+            dirtyFile = editorEntry.getType().getDeclaredMethod("getDirtyFile", int.class);
+            dirtyFile.setAccessible(true);
+        } catch (Exception e) {
+            editorEntry = null;
+            dirtyFile = null;
+        }
+        sEditorEntry = editorEntry;
+        sDirtyFile = dirtyFile;
+
+        Field journalWriter;
+        try {
+            journalWriter = DiskLruCache.class.getDeclaredField("journalWriter");
+            journalWriter.setAccessible(true);
+        } catch (Exception e) {
+            journalWriter = null;
+        }
+        sJournalWriter = journalWriter;
+    }
+
+    /**
+     * Each shard is an independent DiskLruCache with its own lock, its own index and an equal part
+     * of the size budget. A single shard lives directly in the cache dir, more shards in shard-i
+     * subdirs.
+     */
+    private final DiskLruCache[]                      mShards;
+    private final ShardIndex[]                        mIndexes;
+    private final File                                mDir;
     private int                                       mAppVersion;
 
-    private SimpleDiskCache(File dir, int appVersion, long maxSize) throws IOException {
+    private final KeyHasher                           mKeyHasher;
+
+    /**
+     * How keys were named before {@link #mKeyHasher}, or null. While {@link #mLegacyLookups} is
+     * set, keys missing from the index under their current name are also looked up under their
+     * legacy name, and moved to their current name when read. It is set while
+     * {@link #mLegacyKeys} is not empty, once it is a marker file records that lookups are over.
+     */
+    private final KeyHasher                           mLegacyKeyHasher;
+    private volatile boolean                          mLegacyLookups;
+
+    /**
+     * Internal keys of the entries still named by {@link #mLegacyKeyHasher}. They are the entries
+     * the cache had when it was first opened with a new hasher, which a file lists, less those
+     * since moved, removed or evicted. Guarded by itself.
+     */
+    private final Set<String>                         mLegacyKeys      = new HashSet<String>();
+
+    /**
+     * Guards loading the shard indexes from the directory listing, and switching the large entry
+     * store, whose entries are in the indexes too. Taken before any shard index lock, never while
+     * holding one.
+     */
+    private final Object                              mIndexLoadLock   = new Object();
+    private volatile boolean                          mIndexLoaded;
+
+    private volatile EvictionTimeListener             mEvictionTimeListener;
+
+    private volatile CacheMetrics                     mMetrics         = new CacheMetrics();
+
+    private volatile long                             mLastActivityNanos    = System.nanoTime();
+    private final AtomicLong                          mCompactionCount      = new AtomicLong();
+    private final AtomicLong                          mTotalCompactionNanos = new AtomicLong();
+    private final AtomicLong                          mLastCompactionNanos  = new AtomicLong();
+
+    /** Whether journals are compacted, off when DiskLruCache's internals can't be reached. */
+    private volatile boolean                          mCompactionEnabled    = isCompactionSupported();
+
+    /** Recent access frequencies of internal keys, null unless the admission filter is on. */
+    private volatile FrequencySketch                  mAdmissionSketch;
+
+    /** Bytes a value may take on disk, 0 for no limit. */
+    private volatile long                             mMaxEntrySize;
+
+    /**
+     * Separately budgeted store for values over {@link #mMaxEntrySize}, in a subdir, or null to
+     * reject them. Its entries are indexed by the shard their key is routed to, which also
+     * records that they were spilled.
+     */
+    private volatile DiskLruCache                     mLargeEntryStore;
+
+    private SimpleDiskCache(File dir, int appVersion, long maxSize, int shardCount, KeyHasher keyHasher)
+            throws IOException {
+        mDir = dir;
         mAppVersion = appVersion;
-        mDiskLruCache = DiskLruCache.open(dir, appVersion, 2, maxSize);
+        mKeyHasher = keyHasher;
+        mLegacyKeyHasher = keyHasher == KeyHasher.MD5 ? null : KeyHasher.MD5;
+        mShards = new DiskLruCache[shardCount];
+        mIndexes = new ShardIndex[shardCount];
+        discardOtherLayouts(dir, appVersion, shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            mShards[i] = DiskLruCache.open(shardDir(dir, i, shardCount), appVersion, 2, maxSize / shardCount);
+            mIndexes[i] = new ShardIndex();
+        }
+    }
+
+    public static SimpleDiskCache open(File dir, int appVersion, long maxSize) throws IOException {
+        return open(dir, appVersion, maxSize, 1);
+    }
+
+    public static SimpleDiskCache open(File dir, int appVersion, long maxSize, int shardCount) throws IOException {
+        return open(dir, appVersion, maxSize, shardCount, KeyHasher.MURMUR3);
+    }
+
+    /**
+     * Opens a cache split into shardCount shards, routed by key hash. Entries written with a
+     * different shard count are discarded. Entries written with MD5 named keys stay readable under
+     * any other keyHasher; entries written with another hasher do not.
+     */
+    public static synchronized SimpleDiskCache open(File dir, int appVersion, long maxSize, int shardCount,
+            KeyHasher keyHasher) throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1");
+        }
+        if (sUsedDirs.contains(dir)) {
+            throw new IllegalStateException("Cache dir " + dir.getAbsolutePath() + " was used before.");
+        }
+
+        sUsedDirs.add(dir);
+
+        return new SimpleDiskCache(dir, appVersion, maxSize, shardCount, keyHasher);
+    }
+
+    private static File shardDir(File dir, int shard, int shardCount) {
+        return shardCount == 1 ? dir : new File(dir, SHARD_PREFIX + shard);
+    }
+
+    /**
+     * Keys are routed by shard count, so entries written with another count are unreachable. The
+     * unsharded cache shares its dir with other files, so its entries are trimmed away through
+     * DiskLruCache instead of deleting the dir.
+     */
+    private static void discardOtherLayouts(File dir, int appVersion, int shardCount) throws IOException {
+        if (shardCount > 1 && new File(dir, JOURNAL_FILE).exists()) {
+            DiskLruCache unsharded = DiskLruCache.open(dir, appVersion, 2, 1);
+            unsharded.flush();
+            unsharded.close();
+            new File(dir, JOURNAL_FILE).delete();
+        }
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        List<File> shardDirs = new ArrayList<File>();
+        boolean stale = false;
+        for (String name : names) {
+            File shardDir = new File(dir, name);
+            if (name.startsWith(SHARD_PREFIX) && new File(shardDir, JOURNAL_FILE).exists()) {
+                shardDirs.add(shardDir);
+                stale |= !isShardDir(name, shardCount);
+            }
+        }
+        if (stale || (!shardDirs.isEmpty() && shardDirs.size() != shardCount)) {
+            for (File shardDir : shardDirs) {
+                DiskLruCache.open(shardDir, appVersion, 2, 1).delete();
+                shardDir.delete();
+            }
+        }
+    }
+
+    private static boolean isShardDir(String name, int shardCount) {
+        for (int i = 0; shardCount > 1 && i < shardCount; i++) {
+            if (name.equals(SHARD_PREFIX + i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * User should be sure there are no outstanding operations.
+     * 
+     * @throws IOException
+     */
+    public void clear() throws IOException {
+        DiskLruCache largeEntryStore = mLargeEntryStore;
+        if (largeEntryStore != null) {
+            largeEntryStore.delete();
+        }
+        for (int i = 0; i < mShards.length; i++) {
+            File dir = mShards[i].getDirectory();
+            long maxSize = mShards[i].getMaxSize();
+            mShards[i].delete();
+            mShards[i] = DiskLruCache.open(dir, mAppVersion, 2, maxSize);
+        }
+        synchronized (mIndexLoadLock) {
+            // reopened after the shards, since deleting the unsharded cache deletes its subdirs
+            if (largeEntryStore != null) {
+                mLargeEntryStore = DiskLruCache.open(largeEntryStore.getDirectory(), mAppVersion, 2,
+                        largeEntryStore.getMaxSize());
+            }
+            for (ShardIndex index : mIndexes) {
+                synchronized (index) {
+                    index.mExpiry.clear();
+                    index.mLargeEntryKeys.clear();
+                    index.mEvictionEpoch++;
+                }
+            }
+            mIndexLoaded = true;
+            endLegacyLookups();
+        }
+    }
+
+    /**
+     * Closes every shard and releases the dir, so it can be opened again. User should be sure there
+     * are no outstanding operations.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        try {
+            for (DiskLruCache shard : mShards) {
+                shard.close();
+            }
+            DiskLruCache largeEntryStore = mLargeEntryStore;
+            if (largeEntryStore != null) {
+                largeEntryStore.close();
+            }
+        } finally {
+            synchronized (SimpleDiskCache.class) {
+                sUsedDirs.remove(mDir);
+            }
+        }
+    }
+
+    int getShardCount() {
+        return mShards.length;
+    }
+
+    /**
+     * The DiskLruCache holding internalKey, the large entry store if it was spilled there.
+     */
+    DiskLruCache getShard(String internalKey) {
+        DiskLruCache largeEntryStore = mLargeEntryStore;
+        if (largeEntryStore != null) {
+            ShardIndex index = indexOf(internalKey);
+            synchronized (index) {
+                if (index.mLargeEntryKeys.contains(internalKey)) {
+                    mLastActivityNanos = System.nanoTime();
+                    return largeEntryStore;
+                }
+            }
+        }
+        return getHomeShard(internalKey);
+    }
+
+    /**
+     * The shard internalKey is routed to by its hash, where every write starts.
+     */
+    private DiskLruCache getHomeShard(String internalKey) {
+        mLastActivityNanos = System.nanoTime();
+        return mShards[shardIndex(internalKey)];
+    }
+
+    private int shardIndex(String internalKey) {
+        return mShards.length == 1 ? 0 : (internalKey.hashCode() & Integer.MAX_VALUE) % mShards.length;
+    }
+
+    /**
+     * The index of the shard internalKey is routed to, which also indexes it if it was spilled to
+     * the large entry store. Load the indexes with {@link #ensureIndexLoaded()} before locking it.
+     */
+    private ShardIndex indexOf(String internalKey) {
+        return mIndexes[shardIndex(internalKey)];
+    }
+
+    public InputStreamEntry getInputStream(String key) throws IOException {
+        return getInputStreamInternal(migrateKey(key));
+    }
+
+    private InputStreamEntry getInputStreamInternal(String internalKey) throws IOException {
+        DiskLruCache.Snapshot snapshot = getSnapshot(internalKey);
+        if (snapshot == null)
+            return null;
+        try {
+            return new InputStreamEntry(snapshot, readMetadata(internalKey, snapshot));
+        } catch (IOException e) {
+            snapshot.close();
+            throw e;
+        }
+    }
+
+    public BitmapEntry getBitmap(String key) throws IOException {
+        String internalKey = migrateKey(key);
+        DiskLruCache.Snapshot snapshot = getSnapshot(internalKey);
+        if (snapshot == null)
+            return null;
+
+        try {
+            Bitmap bitmap = BitmapFactory.decodeStream(snapshot.getInputStream(VALUE_IDX));
+            return new BitmapEntry(bitmap, readMetadata(internalKey, snapshot));
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    /**
+     * Like {@link #getBitmap(String)}, but sampled down to about reqWidth by reqHeight and decoded
+     * into a bitmap from pool where possible, see {@link BitmapDecoder}. The value is read into
+     * memory first, so its bounds can be decoded before the image.
+     */
+    public BitmapEntry getBitmap(String key, int reqWidth, int reqHeight, Bitmap.Config config, BitmapPool pool)
+            throws IOException {
+        String internalKey = migrateKey(key);
+        DiskLruCache.Snapshot snapshot = getSnapshot(internalKey);
+        if (snapshot == null)
+            return null;
+
+        try {
+            byte[] data = ByteStreams.toByteArray(snapshot.getInputStream(VALUE_IDX));
+            Bitmap bitmap = BitmapDecoder.decode(data, reqWidth, reqHeight, config, pool);
+            return new BitmapEntry(bitmap, readMetadata(internalKey, snapshot));
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    /**
+     * Maps the value of the entry for key, see {@link InputStreamEntry#mapValue()}. The value is not
+     * copied onto the heap, which pays off for values of hundreds of kilobytes and more.
+     */
+    public ByteBufferEntry getMappedValue(String key) throws IOException {
+        InputStreamEntry entry = getInputStream(key);
+        if (entry == null)
+            return null;
+
+        try {
+            return new ByteBufferEntry(entry.mapValue(), entry.getMetadata());
+        } finally {
+            entry.close();
+        }
+    }
+
+    public StringEntry getString(String key) throws IOException {
+        String internalKey = migrateKey(key);
+        DiskLruCache.Snapshot snapshot = getSnapshot(internalKey);
+        if (snapshot == null)
+            return null;
+
+        try {
+            return new StringEntry(snapshot.getString(VALUE_IDX), readMetadata(internalKey, snapshot));
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    /**
+     * Returns the eviction time of the entry for key as far as the in memory index knows it, without
+     * any file I/O.
+     *
+     * @return the eviction time, {@link ExpiryIndex#ABSENT} if there is no entry or
+     *         {@link ExpiryIndex#UNKNOWN} if the entry's metadata hasn't been read yet
+     */
+    public long peekEvictionTime(String key) {
+        return peekEvictionTimeInternal(readKey(key));
+    }
+
+    private long peekEvictionTimeInternal(String internalKey) {
+        ensureIndexLoaded();
+        ShardIndex index = indexOf(internalKey);
+        synchronized (index) {
+            return index.mExpiry.get(internalKey);
+        }
+    }
+
+    /**
+     * True if there is an entry for key which has not expired. Answered from the index; the disk is
+     * only touched to learn the eviction time of entries written before this process started, or
+     * to stat the value file if DiskLruCache may have evicted the entry since it was last seen.
+     */
+    public boolean contains(String key) throws IOException {
+        String internalKey = readKey(key);
+        long evictionTime;
+        int epoch;
+        int currentEpoch;
+        ensureIndexLoaded();
+        ShardIndex index = indexOf(internalKey);
+        synchronized (index) {
+            evictionTime = index.mExpiry.get(internalKey);
+            epoch = index.mExpiry.getEpoch(internalKey);
+            currentEpoch = index.mEvictionEpoch;
+        }
+        if (evictionTime == ExpiryIndex.ABSENT) {
+            return false;
+        }
+        if (evictionTime == ExpiryIndex.UNKNOWN) {
+            EntryMetadata metadata = readMetadata(internalKey);
+            if (metadata == null) {
+                return false;
+            }
+            evictionTime = metadata.getEvictionTime();
+            // reading the metadata file also proved the entry is there
+            epoch = currentEpoch;
+        }
+        if (Clock.now() > evictionTime) {
+            return false;
+        }
+        if (epoch != currentEpoch) {
+            if (!new File(getShard(internalKey).getDirectory(), internalKey + "." + VALUE_IDX).exists()) {
+                forget(internalKey);
+                return false;
+            }
+            synchronized (index) {
+                index.mExpiry.setEpoch(internalKey, currentEpoch);
+            }
+        }
+        return true;
+    }
+
+    private DiskLruCache.Snapshot getSnapshot(String internalKey) throws IOException {
+        FrequencySketch sketch = mAdmissionSketch;
+        if (sketch != null) {
+            sketch.increment(internalKey);
+        }
+        if (peekEvictionTimeInternal(internalKey) == ExpiryIndex.ABSENT) {
+            return null;
+        }
+        DiskLruCache.Snapshot snapshot = getShard(internalKey).get(internalKey);
+        if (snapshot == null) {
+            // evicted by DiskLruCache behind our back
+            forget(internalKey);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Removes the entry if its metadata on disk says it has expired. The metadata is re-read while
+     * holding the DiskLruCache lock, so an entry that is rewritten concurrently is never removed.
+     *
+     * @return true if the entry was removed
+     */
+    boolean removeIfExpired(String internalKey, long now) throws IOException {
+        if (peekEvictionTimeInternal(internalKey) == ExpiryIndex.ABSENT) {
+            return false;
+        }
+        DiskLruCache cache = getShard(internalKey);
+        synchronized (cache) {
+            EntryMetadata metadata = readMetadataQuietly(internalKey);
+            if (metadata == null || now <= metadata.getEvictionTime()) {
+                return false;
+            }
+            if (!cache.remove(internalKey)) {
+                return false;
+            }
+        }
+        forget(internalKey);
+        mMetrics.recordExpiration();
+        return true;
+    }
+
+    /**
+     * Moves the eviction time of the entry for key out to evictionTime by rewriting only its
+     * metadata, the value file is left alone. Like {@link #removeIfExpired}, the metadata is
+     * re-read while holding the DiskLruCache lock, so a concurrent rewrite of the entry wins.
+     *
+     * @return false if the entry is gone, has expired, is being written or already expires later
+     */
+    boolean touch(String key, long evictionTime) throws IOException {
+        String internalKey = readKey(key);
+        DiskLruCache cache = getShard(internalKey);
+        EntryMetadata metadata;
+        boolean evicted;
+        synchronized (cache) {
+            metadata = readMetadataQuietly(internalKey);
+            if (metadata == null || Clock.now() > metadata.getEvictionTime()
+                    || metadata.getEvictionTime() >= evictionTime) {
+                return false;
+            }
+            DiskLruCache.Editor editor = cache.edit(internalKey);
+            if (editor == null) {
+                return false;
+            }
+            metadata.setEvictionTime(evictionTime);
+            try {
+                writeMetadata(metadata, editor);
+                evicted = commit(cache, editor);
+            } finally {
+                editor.abortUnlessCommitted();
+            }
+        }
+        remember(internalKey, metadata);
+        if (evicted) {
+            startEvictionEpoch(internalKey);
+        }
+        return true;
+    }
+
+    /**
+     * Makes sure the eviction time of an entry is known, reading its metadata if needed, and
+     * reports it to the {@link EvictionTimeListener}.
+     */
+    void learnEvictionTime(String internalKey) throws IOException {
+        long evictionTime = peekEvictionTimeInternal(internalKey);
+        if (evictionTime == ExpiryIndex.UNKNOWN) {
+            readMetadata(internalKey);
+        } else if (evictionTime != ExpiryIndex.ABSENT) {
+            EvictionTimeListener listener = mEvictionTimeListener;
+            if (listener != null) {
+                listener.onEvictionTimeKnown(internalKey, evictionTime);
+            }
+        }
+    }
+
+    /**
+     * Internal keys of all entries currently on disk.
+     */
+    String[] listInternalKeys() {
+        List<String> keys = new ArrayList<String>();
+        for (DiskLruCache shard : mShards) {
+            listInternalKeys(shard, keys);
+        }
+        DiskLruCache largeEntryStore = mLargeEntryStore;
+        if (largeEntryStore != null) {
+            listInternalKeys(largeEntryStore, keys);
+        }
+        return keys.toArray(new String[keys.size()]);
+    }
+
+    /**
+     * Adds the keys DiskLruCache's journal lists. The unsharded cache shares its dir with other
+     * files, so if the journal's entries can't be reached only files that look like the value and
+     * metadata files of an entry count.
+     */
+    private static void listInternalKeys(DiskLruCache cache, List<String> keys) {
+        if (sLruEntries != null) {
+            synchronized (cache) {
+                try {
+                    for (Object key : ((Map<?, ?>) sLruEntries.get(cache)).keySet()) {
+                        keys.add((String) key);
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            return;
+        }
+        String[] names = cache.getDirectory().list();
+        if (names == null) {
+            return;
+        }
+        Set<String> files = new HashSet<String>(Arrays.asList(names));
+        for (String name : names) {
+            if (name.endsWith(METADATA_SUFFIX)) {
+                String key = name.substring(0, name.length() - METADATA_SUFFIX.length());
+                if (KEY_PATTERN.matcher(key).matches() && files.contains(key + "." + VALUE_IDX)) {
+                    keys.add(key);
+                }
+            }
+        }
+    }
+
+    void setEvictionTimeListener(EvictionTimeListener listener) {
+        mEvictionTimeListener = listener;
+    }
+
+    /**
+     * Sets where writes, evictions and removals of expired entries are counted.
+     */
+    void setMetrics(CacheMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    private void forget(String internalKey) {
+        ShardIndex index = indexOf(internalKey);
+        synchronized (index) {
+            index.mExpiry.remove(internalKey);
+            index.mLargeEntryKeys.remove(internalKey);
+        }
+    }
+
+    /**
+     * Indexes the eviction time of an entry. The {@link EvictionTimeListener} is only told when it
+     * is first learned or has changed, not on every read of the entry.
+     */
+    private void remember(String internalKey, EntryMetadata metadata) {
+        long evictionTime = metadata.getEvictionTime();
+        long known;
+        ensureIndexLoaded();
+        ShardIndex index = indexOf(internalKey);
+        synchronized (index) {
+            known = index.mExpiry.get(internalKey);
+            index.mExpiry.put(internalKey, evictionTime, index.mEvictionEpoch);
+        }
+        EvictionTimeListener listener = mEvictionTimeListener;
+        if (listener != null && known != evictionTime) {
+            listener.onEvictionTimeKnown(internalKey, evictionTime);
+        }
+    }
+
+    /**
+     * Lists the cache directory once to learn which entries exist. Their eviction times are filled
+     * in as their metadata gets read.
+     */
+    private void ensureIndexLoaded() {
+        if (mIndexLoaded) {
+            return;
+        }
+        synchronized (mIndexLoadLock) {
+            if (mIndexLoaded) {
+                return;
+            }
+            String[] internalKeys = listInternalKeys();
+            for (String internalKey : internalKeys) {
+                ShardIndex index = indexOf(internalKey);
+                synchronized (index) {
+                    index.mExpiry.put(internalKey, ExpiryIndex.UNKNOWN, index.mEvictionEpoch);
+                }
+            }
+            DiskLruCache largeEntryStore = mLargeEntryStore;
+            if (largeEntryStore != null) {
+                rememberLargeEntries(largeEntryStore);
+            }
+            if (mLegacyKeyHasher != null && !new File(mDir, KEYS_MARKER).exists()) {
+                startLegacyLookups(internalKeys);
+            }
+            mIndexLoaded = true;
+        }
+    }
+
+    public OutputStream openStream(String key) throws IOException {
+        return openStream(key, new EntryMetadata());
+    }
+
+    /**
+     * The metadata is written when the returned stream is closed, so that the value length can be
+     * recorded in it.
+     */
+    public OutputStream openStream(String key, EntryMetadata metadata) throws IOException {
+        return openStreamInternal(key, metadata, null);
+    }
+
+    private CacheOutputStream openStreamInternal(String key, EntryMetadata metadata, Batch batch)
+            throws IOException {
+        removeLegacy(key);
+        String internalKey = toInternalKey(key);
+        if (batch != null) {
+            batch.groupJournal(shardIndex(internalKey));
+        }
+        DiskLruCache shard = getHomeShard(internalKey);
+        DiskLruCache.Editor editor = shard.edit(internalKey);
+        if (editor == null) {
+            throw new IOException("Entry " + key + " is already being edited.");
+        }
+        try {
+            BufferedOutputStream bos = new BufferedOutputStream(editor.newOutputStream(VALUE_IDX));
+            return new CacheOutputStream(bos, internalKey, editor, metadata);
+        } catch (IOException e) {
+            editor.abort();
+            throw e;
+        }
+    }
+
+    public void put(String key, InputStream is) throws IOException {
+        put(key, is, new EntryMetadata());
+    }
+
+    public void put(String key, InputStream is, EntryMetadata metadata) throws IOException {
+        OutputStream os = null;
+        try {
+            os = openStream(key, metadata);
+
+            ByteStreams.copy(is, os);
+        } finally {
+            if (os != null)
+                os.close();
+        }
+    }
+
+    public void put(String key, String value) throws IOException {
+        put(key, value, new EntryMetadata());
+    }
+
+    public void put(String key, String value, EntryMetadata metadata) throws IOException {
+        OutputStream cos = null;
+        try {
+            cos = openStream(key, metadata);
+            cos.write(value.getBytes());
+        } finally {
+            if (cos != null)
+                cos.close();
+        }
+
+    }
+
+    public void put(String key, byte[] value, EntryMetadata metadata) throws IOException {
+        OutputStream cos = null;
+        try {
+            cos = openStream(key, metadata);
+            cos.write(value);
+        } finally {
+            if (cos != null)
+                cos.close();
+        }
+    }
+
+    public void remove(String key) throws IOException {
+        removeInternal(toInternalKey(key));
+        removeLegacy(key);
+    }
+
+    /**
+     * Starts a group of operations on several keys, see {@link Batch}.
+     */
+    Batch newBatch() {
+        return new Batch();
+    }
+
+    private void removeInternal(String internalKey) throws IOException {
+        getShard(internalKey).remove(internalKey);
+        forget(internalKey);
+    }
+
+    private void writeMetadata(EntryMetadata metadata, DiskLruCache.Editor editor) throws IOException {
+        OutputStream os = null;
+        try {
+            os = editor.newOutputStream(METADATA_IDX);
+            os.write(metadata.encode());
+        } finally {
+            Closeables.close(os, true);
+        }
+    }
+
+    private EntryMetadata readMetadata(String internalKey, DiskLruCache.Snapshot snapshot) throws IOException {
+        InputStream is = snapshot.getInputStream(METADATA_IDX);
+        try {
+            EntryMetadata metadata = EntryMetadata.decode(ByteStreams.toByteArray(is));
+            remember(internalKey, metadata);
+            return metadata;
+        } finally {
+            Closeables.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Reads the metadata file of an entry directly, without going through DiskLruCache, so that
+     * neither the value file is opened nor a READ is appended to the journal.
+     *
+     * @return null if the entry is gone
+     */
+    private EntryMetadata readMetadata(String internalKey) throws IOException {
+        EntryMetadata metadata = readMetadataQuietly(internalKey);
+        if (metadata == null) {
+            forget(internalKey);
+        } else {
+            remember(internalKey, metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Like {@link #readMetadata(String)} but leaves the index alone.
+     */
+    private EntryMetadata readMetadataQuietly(String internalKey) throws IOException {
+        InputStream is;
+        try {
+            is = new FileInputStream(new File(getShard(internalKey).getDirectory(), internalKey + METADATA_SUFFIX));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            return EntryMetadata.decode(ByteStreams.toByteArray(is));
+        } finally {
+            Closeables.closeQuietly(is);
+        }
+    }
+
+    String toInternalKey(String key) {
+        return mKeyHasher.hash(key);
+    }
+
+    /**
+     * The internal key to read key from, its legacy name if only that is in the index.
+     */
+    private String readKey(String key) {
+        String internalKey = mKeyHasher.hash(key);
+        String legacyKey = legacyKey(key, internalKey);
+        return legacyKey != null ? legacyKey : internalKey;
+    }
+
+    /**
+     * Like {@link #readKey}, but an entry found under its legacy name is moved to its current name
+     * first, so it is only looked up the slow way once.
+     */
+    private String migrateKey(String key) throws IOException {
+        String internalKey = mKeyHasher.hash(key);
+        String legacyKey = legacyKey(key, internalKey);
+        if (legacyKey == null || rename(legacyKey, internalKey)) {
+            return internalKey;
+        }
+        return legacyKey;
+    }
+
+    /**
+     * @return the legacy name of key if only that is in the index, else null
+     */
+    private String legacyKey(String key, String internalKey) {
+        ensureIndexLoaded();
+        if (!mLegacyLookups || peekEvictionTimeInternal(internalKey) != ExpiryIndex.ABSENT) {
+            return null;
+        }
+        String legacyKey = mLegacyKeyHasher.hash(key);
+        return peekEvictionTimeInternal(legacyKey) != ExpiryIndex.ABSENT ? legacyKey : null;
     }
 
-    public static synchronized SimpleDiskCache open(File dir, int appVersion, long maxSize) throws IOException {
-        if (sUsedDirs.contains(dir)) {
-            throw new IllegalStateException("Cache dir " + dir.getAbsolutePath() + " was used before.");
+    /**
+     * Copies the entry under legacyKey to internalKey, byte for byte so legacy metadata stays
+     * legacy, and removes it.
+     *
+     * @return false if the entry is gone or internalKey is being written, the entry is left alone
+     *         then. True if it was moved, or replaced under internalKey meanwhile.
+     */
+    private boolean rename(String legacyKey, String internalKey) throws IOException {
+        DiskLruCache.Snapshot snapshot = getShard(legacyKey).get(legacyKey);
+        if (snapshot == null) {
+            return false;
         }
-
-        sUsedDirs.add(dir);
-
-        return new SimpleDiskCache(dir, appVersion, maxSize);
+        EntryMetadata metadata;
+        DiskLruCache.Editor editor = null;
+        boolean evicted;
+        try {
+            byte[] metadataBytes = ByteStreams.toByteArray(snapshot.getInputStream(METADATA_IDX));
+            metadata = EntryMetadata.decode(metadataBytes);
+            DiskLruCache shard = getHomeShard(internalKey);
+            synchronized (shard) {
+                if (new File(shard.getDirectory(), internalKey + "." + VALUE_IDX).exists()) {
+                    // a put of key won the race, and removed the legacy entry first
+                    return true;
+                }
+                editor = shard.edit(internalKey);
+            }
+            if (editor == null) {
+                return false;
+            }
+            OutputStream os = editor.newOutputStream(VALUE_IDX);
+            try {
+                ByteStreams.copy(snapshot.getInputStream(VALUE_IDX), os);
+            } finally {
+                Closeables.close(os, true);
+            }
+            os = editor.newOutputStream(METADATA_IDX);
+            try {
+                os.write(metadataBytes);
+            } finally {
+                Closeables.close(os, true);
+            }
+            evicted = commit(shard, editor);
+        } finally {
+            if (editor != null) {
+                editor.abortUnlessCommitted();
+            }
+            snapshot.close();
+        }
+        onCommitted(internalKey, metadata, evicted);
+        removeInternal(legacyKey);
+        onLegacyEntryGone(legacyKey);
+        return true;
     }
 
     /**
-     * User should be sure there are no outstanding operations.
-     * 
-     * @throws IOException
+     * Removes the entry stored under the legacy name of key, so a rewritten or removed key can't
+     * be read back from it.
      */
-    public void clear() throws IOException {
-        File dir = mDiskLruCache.getDirectory();
-        long maxSize = mDiskLruCache.getMaxSize();
-        mDiskLruCache.delete();
-        mDiskLruCache = DiskLruCache.open(dir, mAppVersion, 2, maxSize);
+    private void removeLegacy(String key) throws IOException {
+        ensureIndexLoaded();
+        if (!mLegacyLookups) {
+            return;
+        }
+        String legacyKey = mLegacyKeyHasher.hash(key);
+        if (peekEvictionTimeInternal(legacyKey) != ExpiryIndex.ABSENT) {
+            removeInternal(legacyKey);
+            onLegacyEntryGone(legacyKey);
+        }
     }
 
-    public DiskLruCache getCache() {
-        return mDiskLruCache;
+    /**
+     * Learns which of internalKeys are named by the legacy hasher. The first time, that is all of
+     * them and they are listed in a file, later on those of them that are still listed. Caller
+     * holds the index load lock.
+     */
+    private void startLegacyLookups(String[] internalKeys) {
+        File file = new File(mDir, LEGACY_KEYS);
+        synchronized (mLegacyKeys) {
+            mLegacyKeys.clear();
+            if (file.exists()) {
+                Set<String> listed = new HashSet<String>();
+                try {
+                    readLines(file, listed);
+                } catch (IOException e) {
+                    // can't tell them apart, so every entry is looked up under both names again
+                    Collections.addAll(listed, internalKeys);
+                }
+                for (String internalKey : internalKeys) {
+                    if (listed.contains(internalKey)) {
+                        mLegacyKeys.add(internalKey);
+                    }
+                }
+            } else {
+                Collections.addAll(mLegacyKeys, internalKeys);
+                if (!mLegacyKeys.isEmpty()) {
+                    try {
+                        writeLines(file, mLegacyKeys);
+                    } catch (IOException e) {
+                        // listed again on the next open, taking in entries written until then
+                        file.delete();
+                    }
+                }
+            }
+            if (mLegacyKeys.isEmpty()) {
+                endLegacyLookups();
+            } else {
+                mLegacyLookups = true;
+            }
+        }
     }
 
-    public InputStreamEntry getInputStream(String key) throws IOException {
-        DiskLruCache.Snapshot snapshot = mDiskLruCache.get(toInternalKey(key));
-        if (snapshot == null)
-            return null;
-        return new InputStreamEntry(snapshot, readMetadata(snapshot));
+    /**
+     * Ends legacy lookups once the last legacy entry was moved or removed.
+     */
+    private void onLegacyEntryGone(String legacyKey) {
+        synchronized (mLegacyKeys) {
+            if (mLegacyKeys.remove(legacyKey) && mLegacyKeys.isEmpty()) {
+                endLegacyLookups();
+            }
+        }
     }
 
-    public BitmapEntry getBitmap(String key) throws IOException {
-        DiskLruCache.Snapshot snapshot = mDiskLruCache.get(toInternalKey(key));
-        if (snapshot == null)
-            return null;
+    /**
+     * Marks the cache as holding only entries named by the current hasher.
+     */
+    private void endLegacyLookups() {
+        mLegacyLookups = false;
+        if (mLegacyKeyHasher != null) {
+            synchronized (mLegacyKeys) {
+                mLegacyKeys.clear();
+            }
+            try {
+                new File(mDir, KEYS_MARKER).createNewFile();
+                new File(mDir, LEGACY_KEYS).delete();
+            } catch (IOException e) {
+                // legacy lookups start again on the next open, until the marker can be written
+            }
+        }
+    }
 
+    private static void readLines(File file, Set<String> lines) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "US-ASCII"));
         try {
-            Bitmap bitmap = BitmapFactory.decodeStream(snapshot.getInputStream(VALUE_IDX));
-            return new BitmapEntry(bitmap, readMetadata(snapshot));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
         } finally {
-            snapshot.close();
+            Closeables.closeQuietly(reader);
         }
     }
 
-    public StringEntry getString(String key) throws IOException {
-        DiskLruCache.Snapshot snapshot = mDiskLruCache.get(toInternalKey(key));
-        if (snapshot == null)
-            return null;
-
+    private static void writeLines(File file, Set<String> lines) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "US-ASCII"));
         try {
-            return new StringEntry(snapshot.getString(VALUE_IDX), readMetadata(snapshot));
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
         } finally {
-            snapshot.close();
+            Closeables.close(writer, false);
         }
     }
 
-    public boolean contains(String key) throws IOException {
-        DiskLruCache.Snapshot snapshot = mDiskLruCache.get(toInternalKey(key));
-        if (snapshot == null)
-            return false;
-
-        snapshot.close();
-        return true;
+    private void onCommitted(String internalKey, EntryMetadata metadata, boolean evicted) throws IOException {
+        DiskLruCache largeEntryStore = mLargeEntryStore;
+        boolean wasLarge;
+        ShardIndex index = indexOf(internalKey);
+        synchronized (index) {
+            wasLarge = index.mLargeEntryKeys.remove(internalKey);
+        }
+        if (wasLarge && largeEntryStore != null) {
+            largeEntryStore.remove(internalKey);
+        }
+        remember(internalKey, metadata);
+        if (evicted) {
+            startEvictionEpoch(internalKey);
+        }
     }
 
-    public OutputStream openStream(String key) throws IOException {
-        return openStream(key, new HashMap<String, Serializable>());
+    /**
+     * Like {@link #onCommitted} for an entry written to the large entry store, which is trimmed
+     * right away. The entry is routed there before its old value in its home shard is removed.
+     */
+    private void onSpilled(String internalKey, EntryMetadata metadata, boolean evicted) throws IOException {
+        ShardIndex index = indexOf(internalKey);
+        synchronized (index) {
+            index.mLargeEntryKeys.add(internalKey);
+        }
+        mShards[shardIndex(internalKey)].remove(internalKey);
+        remember(internalKey, metadata);
+        if (evicted) {
+            // the large entry store's entries are spread over all shard indexes
+            startEvictionEpoch(mIndexes);
+        }
     }
 
-    public OutputStream openStream(String key, Map<String, ? extends Serializable> metadata) throws IOException {
-        DiskLruCache.Editor editor = mDiskLruCache.edit(toInternalKey(key));
-        try {
-            writeMetadata(metadata, editor);
-            BufferedOutputStream bos = new BufferedOutputStream(editor.newOutputStream(VALUE_IDX));
-            return new CacheOutputStream(bos, editor);
-        } catch (IOException e) {
-            editor.abort();
-            throw e;
+    /**
+     * Commits editor, an edit of cache, and trims cache before its lock is released if the commit
+     * took it over its size budget. DiskLruCache would trim in the background, which then finds
+     * nothing left to evict, so every eviction is counted. Start a new eviction epoch if entries
+     * were evicted, once the committed entry is remembered.
+     *
+     * @return whether entries were evicted
+     */
+    private boolean commit(DiskLruCache cache, DiskLruCache.Editor editor) throws IOException {
+        synchronized (cache) {
+            editor.commit();
+            return trimLocked(cache);
         }
     }
 
-    public void put(String key, InputStream is) throws IOException {
-        put(key, is, new HashMap<String, Serializable>());
+    /**
+     * Evicts the least recently used entries of cache until it is within its size budget, and
+     * records how many. Caller holds the lock of cache.
+     *
+     * @return whether entries were evicted
+     */
+    private boolean trimLocked(DiskLruCache cache) throws IOException {
+        long size = cache.size();
+        if (size <= cache.getMaxSize()) {
+            return false;
+        }
+        int entries = entryCount(cache);
+        cache.flush();
+        mMetrics.recordEviction(entries - entryCount(cache), size - cache.size());
+        return true;
     }
 
-    public void put(String key, InputStream is, Map<String, Serializable> annotations) throws IOException {
-        OutputStream os = null;
+    /**
+     * @return the number of entries of cache, 0 if DiskLruCache's entries can't be reached. Caller
+     *         holds the lock of cache.
+     */
+    private static int entryCount(DiskLruCache cache) {
+        if (sLruEntries == null) {
+            return 0;
+        }
         try {
-            os = openStream(key, annotations);
+            return ((Map<?, ?>) sLruEntries.get(cache)).size();
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
 
-            ByteStreams.copy(is, os);
-        } finally {
-            if (os != null)
-                os.close();
+    /**
+     * Starts a new epoch in the index of internalKey's shard, whose entries were evicted.
+     */
+    private void startEvictionEpoch(String internalKey) {
+        startEvictionEpoch(indexOf(internalKey));
+    }
+
+    private static void startEvictionEpoch(ShardIndex... indexes) {
+        for (ShardIndex index : indexes) {
+            synchronized (index) {
+                index.mEvictionEpoch++;
+            }
         }
     }
 
-    public void put(String key, String value) throws IOException {
-        put(key, value, new HashMap<String, Serializable>());
+    /**
+     * Limits the size of values, checked while they are streamed in so an oversized value never
+     * makes DiskLruCache evict on its behalf. Larger values are moved to a store with its own
+     * budget if largeEntryMaxSize is positive and {@link #isSpillSupported()}, or rejected with an
+     * {@link EntryTooLargeException}. Turning the large entry store off deletes its entries.
+     *
+     * @param maxEntrySize in bytes on disk, 0 for no limit
+     * @param largeEntryMaxSize size budget of the large entry store, 0 for none
+     */
+    void setMaxEntrySize(long maxEntrySize, long largeEntryMaxSize) throws IOException {
+        mMaxEntrySize = maxEntrySize;
+        DiskLruCache largeEntryStore = mLargeEntryStore;
+        if (largeEntryMaxSize > 0 && largeEntryStore != null) {
+            boolean evicted;
+            synchronized (largeEntryStore) {
+                largeEntryStore.setMaxSize(largeEntryMaxSize);
+                evicted = trimLocked(largeEntryStore);
+            }
+            if (evicted) {
+                startEvictionEpoch(mIndexes);
+            }
+        } else if (largeEntryMaxSize > 0) {
+            largeEntryStore = DiskLruCache.open(new File(mDir, LARGE_ENTRY_DIR), mAppVersion, 2, largeEntryMaxSize);
+            synchronized (mIndexLoadLock) {
+                mLargeEntryStore = largeEntryStore;
+                if (mIndexLoaded) {
+                    rememberLargeEntries(largeEntryStore);
+                }
+            }
+        } else if (largeEntryStore != null) {
+            synchronized (mIndexLoadLock) {
+                mLargeEntryStore = null;
+                for (ShardIndex index : mIndexes) {
+                    synchronized (index) {
+                        for (String internalKey : index.mLargeEntryKeys) {
+                            index.mExpiry.remove(internalKey);
+                        }
+                        index.mLargeEntryKeys.clear();
+                    }
+                }
+            }
+            largeEntryStore.delete();
+        }
     }
 
-    public void put(String key, String value, Map<String, ? extends Serializable> annotations) throws IOException {
-        OutputStream cos = null;
-        try {
-            cos = openStream(key, annotations);
-            cos.write(value.getBytes());
-        } finally {
-            if (cos != null)
-                cos.close();
+    /**
+     * Adds the entries of the large entry store to the indexes. A value found in both stores was
+     * spilled last, so the large entry store wins. Caller holds {@link #mIndexLoadLock}.
+     */
+    private void rememberLargeEntries(DiskLruCache largeEntryStore) {
+        List<String> internalKeys = new ArrayList<String>();
+        listInternalKeys(largeEntryStore, internalKeys);
+        for (String internalKey : internalKeys) {
+            ShardIndex index = indexOf(internalKey);
+            synchronized (index) {
+                index.mLargeEntryKeys.add(internalKey);
+                if (index.mExpiry.get(internalKey) == ExpiryIndex.ABSENT) {
+                    index.mExpiry.put(internalKey, ExpiryIndex.UNKNOWN, index.mEvictionEpoch);
+                }
+            }
         }
+    }
 
+    static boolean isAdmissionFilterSupported() {
+        return sLruEntries != null;
     }
 
-    public void remove(String key) throws IOException {
-        mDiskLruCache.remove(toInternalKey(key));
+    /**
+     * Once a shard is full, new entries are only admitted if they were accessed more often
+     * recently than the least recently used entry they would evict, TinyLFU style. Rejected
+     * writes are discarded. Replacing an existing entry is always admitted.
+     *
+     * @param expectedEntries roughly how many entries fit in the cache, 0 to turn the filter off
+     * @throws UnsupportedOperationException if DiskLruCache's entries can't be reached
+     */
+    void setAdmissionFilter(int expectedEntries) {
+        if (expectedEntries > 0 && !isAdmissionFilterSupported()) {
+            throw new UnsupportedOperationException("The admission filter needs DiskLruCache 2.0.2");
+        }
+        mAdmissionSketch = expectedEntries > 0 ? new FrequencySketch(expectedEntries) : null;
     }
 
-    private void writeMetadata(Map<String, ? extends Serializable> metadata, DiskLruCache.Editor editor)
-            throws IOException {
-        ObjectOutputStream oos = null;
+    /**
+     * @return false if the admission filter turns away a new entry of length bytes for internalKey
+     */
+    private boolean admit(String internalKey, long length) {
+        FrequencySketch sketch = mAdmissionSketch;
+        if (sketch == null) {
+            return true;
+        }
+        sketch.increment(internalKey);
+        if (peekEvictionTimeInternal(internalKey) != ExpiryIndex.ABSENT) {
+            return true;
+        }
+        DiskLruCache shard = getShard(internalKey);
+        String victim;
+        synchronized (shard) {
+            if (shard.size() + length <= shard.getMaxSize()) {
+                return true;
+            }
+            victim = eldestKey(shard);
+        }
+        return victim == null || victim.equals(internalKey)
+                || sketch.frequency(internalKey) > sketch.frequency(victim);
+    }
+
+    /**
+     * @return the key DiskLruCache evicts next. Caller holds the shard's lock.
+     */
+    private static String eldestKey(DiskLruCache shard) {
         try {
-            oos = new ObjectOutputStream(new BufferedOutputStream(editor.newOutputStream(METADATA_IDX)));
-            oos.writeObject(metadata);
-        } finally {
-            Closeables.close(oos, true);
+            Map<?, ?> entries = (Map<?, ?>) sLruEntries.get(shard);
+            Iterator<?> keys = entries.keySet().iterator();
+            return keys.hasNext() ? (String) keys.next() : null;
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
         }
     }
 
-    private Map<String, Serializable> readMetadata(DiskLruCache.Snapshot snapshot) throws IOException {
-        ObjectInputStream ois = null;
+    /**
+     * Whether values that outgrow the maximum entry size can be moved to the large entry store,
+     * which copies what was written so far from the file DiskLruCache is editing.
+     */
+    static boolean isSpillSupported() {
+        return sDirtyFile != null;
+    }
+
+    private static File dirtyFile(DiskLruCache.Editor editor, int index) throws IOException {
         try {
-            ois = new ObjectInputStream(new BufferedInputStream(snapshot.getInputStream(METADATA_IDX)));
-            @SuppressWarnings("unchecked")
-            Map<String, Serializable> annotations = (Map<String, Serializable>) ois.readObject();
-            return annotations;
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
-        } finally {
-            Closeables.close(ois, true);
+            return (File) sDirtyFile.invoke(sEditorEntry.get(editor), index);
+        } catch (InvocationTargetException e) {
+            throw new IOException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static boolean isCompactionSupported() {
+        return sRebuildJournal != null;
+    }
+
+    /**
+     * Rebuilds the journal of every shard with at least minRedundantOps redundant lines, so
+     * DiskLruCache doesn't rebuild it in the middle of later operations. Operations on a shard wait
+     * while its journal is rebuilt.
+     *
+     * Does nothing if DiskLruCache's journal rebuild can't be reached, {@link #journalStats()}
+     * reports that with a redundant line count of -1.
+     *
+     * @return the number of journals rebuilt
+     */
+    int compact(int minRedundantOps) throws IOException {
+        if (!mCompactionEnabled) {
+            return 0;
+        }
+        int compacted = 0;
+        for (DiskLruCache shard : mShards) {
+            long start = System.nanoTime();
+            synchronized (shard) {
+                if (shard.isClosed() || redundantOpCount(shard) < minRedundantOps) {
+                    continue;
+                }
+                try {
+                    sRebuildJournal.invoke(shard);
+                    sRedundantOpCount.setInt(shard, 0);
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                } catch (IllegalAccessException e) {
+                    throw new IOException(e);
+                }
+            }
+            long duration = System.nanoTime() - start;
+            mCompactionCount.incrementAndGet();
+            mTotalCompactionNanos.addAndGet(duration);
+            mLastCompactionNanos.set(duration);
+            compacted++;
+        }
+        return compacted;
+    }
+
+    /**
+     * @return milliseconds since the last operation on an entry
+     */
+    long getIdleMillis() {
+        return (System.nanoTime() - mLastActivityNanos) / 1000000;
+    }
+
+    JournalStats journalStats() {
+        long journalBytes = 0;
+        int redundantOps = 0;
+        for (DiskLruCache shard : mShards) {
+            journalBytes += new File(shard.getDirectory(), JOURNAL_FILE).length();
+            if (mCompactionEnabled) {
+                synchronized (shard) {
+                    redundantOps += redundantOpCount(shard);
+                }
+            }
         }
+        return new JournalStats(mCompactionCount.get(), mTotalCompactionNanos.get(), mLastCompactionNanos.get(),
+                journalBytes, mCompactionEnabled ? redundantOps : -1);
     }
 
-    private String toInternalKey(String key) {
-        return md5(key);
+    /** Leaves the journals alone, as if DiskLruCache's journal rebuild couldn't be reached. */
+    void disableCompaction() {
+        mCompactionEnabled = false;
     }
 
-    private String md5(String s) {
+    private static int redundantOpCount(DiskLruCache shard) {
         try {
-            MessageDigest m = MessageDigest.getInstance("MD5");
-            m.update(s.getBytes("UTF-8"));
-            byte[] digest = m.digest();
-            BigInteger bigInt = new BigInteger(1, digest);
-            return bigInt.toString(16);
-        } catch (NoSuchAlgorithmException e) {
-            throw new AssertionError();
-        } catch (UnsupportedEncodingException e) {
-            throw new AssertionError();
+            return sRedundantOpCount.getInt(shard);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Operations on several keys. DiskLruCache flushes its journal after every edit, the journals
+     * of the shards a batch edits are flushed once when it is closed instead, along with the lines
+     * other threads added meanwhile. Entries committed by then are only known to the journal if
+     * it is flushed, so a crash before the batch is closed leaves their files behind unaccounted.
+     *
+     * Not thread safe, but other threads can use the cache while a batch is open.
+     */
+    final class Batch implements Closeable {
+
+        /** The journal of each shard whose flushes the batch holds back, null for the others. */
+        private final GroupedJournalWriter[] mJournals = new GroupedJournalWriter[mShards.length];
+
+        private Batch() {
+        }
+
+        /**
+         * Holds back the journal flushes of shard until the batch is closed. Does nothing if the
+         * journal can't be reached.
+         */
+        private void groupJournal(int shard) throws IOException {
+            if (sJournalWriter == null || mJournals[shard] != null) {
+                return;
+            }
+            DiskLruCache cache = mShards[shard];
+            synchronized (cache) {
+                try {
+                    Writer writer = (Writer) sJournalWriter.get(cache);
+                    if (writer == null) {
+                        // closed, the edit will fail
+                        return;
+                    }
+                    // DiskLruCache replaces its writer when it rebuilds the journal
+                    if (!(writer instanceof GroupedJournalWriter)) {
+                        writer = new GroupedJournalWriter(writer);
+                        sJournalWriter.set(cache, writer);
+                    }
+                    ((GroupedJournalWriter) writer).mBatches++;
+                    mJournals[shard] = (GroupedJournalWriter) writer;
+                } catch (IllegalAccessException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }
+
+        long peekEvictionTime(String key) {
+            return peekEvictionTimeInternal(readKey(key));
+        }
+
+        InputStreamEntry getInputStream(String key) throws IOException {
+            return getInputStreamInternal(migrateKey(key));
+        }
+
+        /**
+         * Counts a read of key that found nothing, so that keys turned away by the admission
+         * filter earn their way in by being asked for.
+         */
+        void recordMiss(String key) {
+            FrequencySketch sketch = mAdmissionSketch;
+            if (sketch != null) {
+                sketch.increment(readKey(key));
+            }
+        }
+
+        CacheOutputStream openStream(String key, EntryMetadata metadata) throws IOException {
+            return openStreamInternal(key, metadata, this);
+        }
+
+        void remove(String key) throws IOException {
+            String internalKey = toInternalKey(key);
+            groupJournal(shardIndex(internalKey));
+            removeInternal(internalKey);
+            removeLegacy(key);
+        }
+
+        /**
+         * Flushes the journals the batch held back, unless another open batch still holds them.
+         */
+        @Override
+        public void close() throws IOException {
+            IOException flushException = null;
+            for (int i = 0; i < mJournals.length; i++) {
+                GroupedJournalWriter journal = mJournals[i];
+                if (journal == null) {
+                    continue;
+                }
+                mJournals[i] = null;
+                DiskLruCache cache = mShards[i];
+                synchronized (cache) {
+                    try {
+                        // a journal that was rebuilt or closed meanwhile was flushed then
+                        if (--journal.mBatches == 0 && sJournalWriter.get(cache) == journal) {
+                            journal.flush();
+                        }
+                    } catch (IOException e) {
+                        if (flushException == null) {
+                            flushException = e;
+                        }
+                    } catch (IllegalAccessException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+            if (flushException != null) {
+                throw flushException;
+            }
+        }
+    }
+
+    /**
+     * Wraps the journal writer of a DiskLruCache, which calls flush() after every edit. Flushes
+     * are held back while any batch holds the journal. Guarded by the DiskLruCache, like the
+     * writer it wraps.
+     */
+    private static final class GroupedJournalWriter extends FilterWriter {
+
+        int mBatches;
+
+        GroupedJournalWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (mBatches == 0) {
+                super.flush();
+            }
         }
     }
 
-    private class CacheOutputStream extends FilterOutputStream {
+    /**
+     * The entries of one shard, guarded by itself. The epoch is bumped every time a commit makes
+     * the shard evict, so index entries verified in an older epoch may have been evicted and are
+     * re-checked with a stat of their value file. Keys of the shard's entries that were spilled to
+     * the large entry store are kept too.
+     */
+    private static final class ShardIndex {
+
+        final ExpiryIndex mExpiry         = new ExpiryIndex();
+        final Set<String> mLargeEntryKeys = new HashSet<String>();
+        int               mEvictionEpoch;
+    }
+
+    /**
+     * Told about the eviction time of every entry as it is written, first read or changed.
+     */
+    interface EvictionTimeListener {
+        void onEvictionTimeKnown(String internalKey, long evictionTime);
+    }
+
+    /**
+     * Commits the entry when closed, or discards it if a write failed or it was aborted.
+     */
+    final class CacheOutputStream extends FilterOutputStream {
 
-        private final DiskLruCache.Editor editor;
-        private boolean                   failed = false;
+        private final String              internalKey;
+        private DiskLruCache.Editor       editor;
+        private final EntryMetadata       metadata;
+        private long                      written  = 0;
+        private long                      limit;
+        private final DiskLruCache        spillStore;
+        private DiskLruCache              largeEntryStore;
+        private EntryTooLargeException    tooLarge;
+        private boolean                   failed   = false;
+        private boolean                   closed   = false;
+        private boolean                   rejected = false;
 
-        private CacheOutputStream(OutputStream os, DiskLruCache.Editor editor) {
+        private CacheOutputStream(OutputStream os, String internalKey, DiskLruCache.Editor editor,
+                EntryMetadata metadata) {
             super(os);
+            this.internalKey = internalKey;
             this.editor = editor;
+            this.metadata = metadata;
+            long maxEntrySize = mMaxEntrySize;
+            this.limit = maxEntrySize > 0 ? maxEntrySize : Long.MAX_VALUE;
+            this.spillStore = maxEntrySize > 0 && isSpillSupported() ? mLargeEntryStore : null;
+        }
+
+        /**
+         * Called before a write of length bytes would take the value over its limit. Moves the
+         * value written so far to the large entry store, or fails the stream if there is none or
+         * the value doesn't fit its budget either.
+         */
+        private void overflow(long length) throws IOException {
+            DiskLruCache store = spillStore;
+            if (largeEntryStore != null || store == null || written + length > store.getMaxSize()) {
+                failed = true;
+                tooLarge = new EntryTooLargeException(internalKey, store != null ? store.getMaxSize() : limit);
+                throw tooLarge;
+            }
+            DiskLruCache.Editor largeEditor = store.edit(internalKey);
+            if (largeEditor == null) {
+                failed = true;
+                throw new IOException("Entry " + internalKey + " is already being edited.");
+            }
+            OutputStream largeOut = null;
+            InputStream valueSoFar = null;
+            try {
+                out.close();
+                largeOut = new BufferedOutputStream(largeEditor.newOutputStream(VALUE_IDX));
+                // the value so far, as the home shard has it on disk
+                valueSoFar = new FileInputStream(dirtyFile(editor, VALUE_IDX));
+                // DiskLruCache hides write failures until the edit is committed
+                if (ByteStreams.copy(valueSoFar, largeOut) != written) {
+                    throw new IOException("Entry " + internalKey + " was not fully written.");
+                }
+            } catch (IOException e) {
+                failed = true;
+                Closeables.close(largeOut, true);
+                largeEditor.abort();
+                throw e;
+            } finally {
+                Closeables.closeQuietly(valueSoFar);
+            }
+            editor.abort();
+            editor = largeEditor;
+            out = largeOut;
+            largeEntryStore = store;
+            limit = store.getMaxSize();
+        }
+
+        /**
+         * @return the exception writes failed with because the value outgrew its limit, which
+         *         serializers may have wrapped in their own, or null
+         */
+        EntryTooLargeException getTooLargeException() {
+            return tooLarge;
+        }
+
+        /**
+         * @return whether the admission filter turned the entry away when the stream was closed
+         */
+        boolean isRejected() {
+            return rejected;
+        }
+
+        /**
+         * Closes the stream without committing what was written. Does nothing if it is already
+         * closed.
+         */
+        void abort() throws IOException {
+            failed = true;
+            close();
         }
 
         @Override
         public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
             IOException closeException = null;
             try {
                 super.close();
             } catch (IOException e) {
+                failed = true;
                 closeException = e;
             }
 
-            if (failed) {
+            if (!failed) {
+                try {
+                    metadata.setValueLength(written);
+                    writeMetadata(metadata, editor);
+                } catch (IOException e) {
+                    failed = true;
+                    closeException = e;
+                }
+            }
+
+            if (tooLarge != null) {
+                editor.abort();
+                mMetrics.recordRejection();
+                // the put was meant to replace it
+                removeInternal(internalKey);
+            } else if (!failed && largeEntryStore == null && !admit(internalKey, written)) {
+                rejected = true;
+                editor.abort();
+                mMetrics.recordRejection();
+            } else if (failed) {
                 editor.abort();
             } else {
-                editor.commit();
+                DiskLruCache store = largeEntryStore != null ? largeEntryStore : mShards[shardIndex(internalKey)];
+                boolean evicted = commit(store, editor);
+                mMetrics.recordWrite(written);
+                if (largeEntryStore != null) {
+                    onSpilled(internalKey, metadata, evicted);
+                } else {
+                    onCommitted(internalKey, metadata, evicted);
+                }
             }
 
             if (closeException != null)
@@ -248,8 +1697,12 @@ class SimpleDiskCache {
 
         @Override
         public void write(int oneByte) throws IOException {
+            if (written + 1 > limit) {
+                overflow(1);
+            }
             try {
-                super.write(oneByte);
+                out.write(oneByte);
+                written++;
             } catch (IOException e) {
                 failed = true;
                 throw e;
@@ -258,18 +1711,18 @@ class SimpleDiskCache {
 
         @Override
         public void write(byte[] buffer) throws IOException {
-            try {
-                super.write(buffer);
-            } catch (IOException e) {
-                failed = true;
-                throw e;
-            }
+            write(buffer, 0, buffer.length);
         }
 
         @Override
         public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (written + length > limit) {
+                overflow(length);
+            }
             try {
-                super.write(buffer, offset, length);
+                // FilterOutputStream would forward this one byte at a time
+                out.write(buffer, offset, length);
+                written += length;
             } catch (IOException e) {
                 failed = true;
                 throw e;
@@ -278,10 +1731,10 @@ class SimpleDiskCache {
     }
 
     public static class InputStreamEntry {
-        private final DiskLruCache.Snapshot     snapshot;
-        private final Map<String, Serializable> metadata;
+        private final DiskLruCache.Snapshot snapshot;
+        private final EntryMetadata         metadata;
 
-        public InputStreamEntry(DiskLruCache.Snapshot snapshot, Map<String, Serializable> metadata) {
+        public InputStreamEntry(DiskLruCache.Snapshot snapshot, EntryMetadata metadata) {
             this.metadata = metadata;
             this.snapshot = snapshot;
         }
@@ -290,7 +1743,21 @@ class SimpleDiskCache {
             return snapshot.getInputStream(VALUE_IDX);
         }
 
-        public Map<String, Serializable> getMetadata() {
+        public long getLength() {
+            return snapshot.getLength(VALUE_IDX);
+        }
+
+        /**
+         * Maps the value file read only. The mapping stays valid after the entry is closed, and after
+         * the entry is replaced or evicted, as DiskLruCache never writes to a value file in place. It
+         * is released when the buffer is garbage collected.
+         */
+        public MappedByteBuffer mapValue() throws IOException {
+            FileChannel channel = ((FileInputStream) snapshot.getInputStream(VALUE_IDX)).getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        public EntryMetadata getMetadata() {
             return metadata;
         }
 
@@ -302,10 +1769,10 @@ class SimpleDiskCache {
     }
 
     public static class BitmapEntry {
-        private final Bitmap                    bitmap;
-        private final Map<String, Serializable> metadata;
+        private final Bitmap        bitmap;
+        private final EntryMetadata metadata;
 
-        public BitmapEntry(Bitmap bitmap, Map<String, Serializable> metadata) {
+        public BitmapEntry(Bitmap bitmap, EntryMetadata metadata) {
             this.bitmap = bitmap;
             this.metadata = metadata;
         }
@@ -314,16 +1781,34 @@ class SimpleDiskCache {
             return bitmap;
         }
 
-        public Map<String, Serializable> getMetadata() {
+        public EntryMetadata getMetadata() {
+            return metadata;
+        }
+    }
+
+    public static class ByteBufferEntry {
+        private final MappedByteBuffer buffer;
+        private final EntryMetadata    metadata;
+
+        public ByteBufferEntry(MappedByteBuffer buffer, EntryMetadata metadata) {
+            this.buffer = buffer;
+            this.metadata = metadata;
+        }
+
+        public MappedByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        public EntryMetadata getMetadata() {
             return metadata;
         }
     }
 
     public static class StringEntry {
-        private final String                    string;
-        private final Map<String, Serializable> metadata;
+        private final String        string;
+        private final EntryMetadata metadata;
 
-        public StringEntry(String string, Map<String, Serializable> metadata) {
+        public StringEntry(String string, EntryMetadata metadata) {
             this.string = string;
             this.metadata = metadata;
         }
@@ -332,7 +1817,7 @@ class SimpleDiskCache {
             return string;
         }
 
-        public Map<String, Serializable> getMetadata() {
+        public EntryMetadata getMetadata() {
             return metadata;
         }
     }
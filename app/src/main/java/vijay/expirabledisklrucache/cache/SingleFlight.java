@@ -0,0 +1,69 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs at most one call per key and type at a time. Callers that arrive while a call for their key
+ * and type is in flight wait for it and get its result, or its exception, instead of starting
+ * their own. Calls for the same key as another type run on their own, as their results can't be
+ * shared.
+ */
+final class SingleFlight {
+
+    private final ConcurrentHashMap<Flight, FutureTask<Object>> mCalls = new ConcurrentHashMap<>();
+
+    /**
+     * @param type the type callable returns values of, null for calls no caller of another type
+     *            should join
+     */
+    Object execute(String key, Type type, Callable<Object> callable) throws Exception {
+        Flight flight = new Flight(key, type);
+        FutureTask<Object> call = new FutureTask<>(callable);
+        FutureTask<Object> inFlight = mCalls.putIfAbsent(flight, call);
+        if (inFlight == null) {
+            try {
+                call.run();
+            } finally {
+                mCalls.remove(flight, call);
+            }
+            inFlight = call;
+        }
+        try {
+            return inFlight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private static final class Flight {
+        final String mKey;
+        final Type   mType;
+
+        Flight(String key, Type type) {
+            mKey = key;
+            mType = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Flight)) {
+                return false;
+            }
+            Flight other = (Flight) o;
+            return mKey.equals(other.mKey) && (mType == null ? other.mType == null : mType.equals(other.mType));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mKey.hashCode() + (mType == null ? 0 : mType.hashCode());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package vijay.expirabledisklrucache.cache;
+
+/**
+ * Snapshot of the background expired entry sweeper's counters.
+ */
+public final class SweeperStats {
+
+    private final long mSweepCount;
+    private final long mRemovedCount;
+    private final long mTotalSweepTimeNanos;
+    private final long mLastSweepTimeNanos;
+    private final int  mScheduledCount;
+    private final int  mPendingCount;
+
+    SweeperStats(long sweepCount, long removedCount, long totalSweepTimeNanos, long lastSweepTimeNanos,
+            int scheduledCount, int pendingCount) {
+        mSweepCount = sweepCount;
+        mRemovedCount = removedCount;
+        mTotalSweepTimeNanos = totalSweepTimeNanos;
+        mLastSweepTimeNanos = lastSweepTimeNanos;
+        mScheduledCount = scheduledCount;
+        mPendingCount = pendingCount;
+    }
+
+    /** Number of ticks that had work to do. */
+    public long getSweepCount() {
+        return mSweepCount;
+    }
+
+    /** Number of expired entries removed. */
+    public long getRemovedCount() {
+        return mRemovedCount;
+    }
+
+    public long getTotalSweepTimeNanos() {
+        return mTotalSweepTimeNanos;
+    }
+
+    public long getLastSweepTimeNanos() {
+        return mLastSweepTimeNanos;
+    }
+
+    /** Entries waiting in the timing wheel for their eviction time. */
+    public int getScheduledCount() {
+        return mScheduledCount;
+    }
+
+    /** Entries past their eviction time still waiting for a removal slot. */
+    public int getPendingCount() {
+        return mPendingCount;
+    }
+
+    @Override
+    public String toString() {
+        return "SweeperStats{sweeps=" + mSweepCount + ", removed=" + mRemovedCount + ", totalSweepTimeNanos="
+                + mTotalSweepTimeNanos + ", lastSweepTimeNanos=" + mLastSweepTimeNanos + ", scheduled="
+                + mScheduledCount + ", pending=" + mPendingCount + "}";
+    }
+}
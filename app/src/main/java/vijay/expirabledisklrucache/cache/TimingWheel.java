@@ -0,0 +1,147 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel of keys and their deadlines. Level 0 has one bucket per tick, every
+ * further level has buckets spanning a full revolution of the level below. Scheduling is O(1) and
+ * advancing by one tick only touches one bucket per level that rolls over, so the cost of a tick
+ * does not depend on how many keys are scheduled further out.
+ *
+ * Deadlines beyond the top level are parked in its last bucket and rescheduled when it cascades.
+ *
+ * Not thread safe.
+ */
+final class TimingWheel {
+
+    private final long              mTickMillis;
+    private final int               mBits;
+    private final int               mMask;
+    private final List<Timeout>[][] mLevels;
+    private long                    mCurrentTick;
+    private int                     mSize;
+
+    /**
+     * @param tickMillis resolution of the wheel
+     * @param bits buckets per level as a power of two
+     * @param levels number of levels
+     * @param nowMillis start time
+     */
+    TimingWheel(long tickMillis, int bits, int levels, long nowMillis) {
+        if (tickMillis <= 0 || bits <= 0 || levels <= 0 || bits * levels >= 63) {
+            throw new IllegalArgumentException("Invalid timing wheel dimensions");
+        }
+        mTickMillis = tickMillis;
+        mBits = bits;
+        mMask = (1 << bits) - 1;
+        mLevels = newLevels(levels, 1 << bits);
+        mCurrentTick = nowMillis / tickMillis;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Timeout>[][] newLevels(int levels, int buckets) {
+        // arrays of a parameterized type can't be created directly
+        return (List<Timeout>[][]) new List<?>[levels][buckets];
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Schedules key. Keys that are already due are added to {@code due} right away.
+     */
+    void schedule(String key, long deadlineMillis, Collection<String> due) {
+        schedule(new Timeout(key, deadlineMillis), due);
+    }
+
+    /**
+     * Moves the wheel forward to nowMillis and adds every key whose deadline has passed to due.
+     */
+    void advance(long nowMillis, Collection<String> due) {
+        long targetTick = nowMillis / mTickMillis;
+        while (mCurrentTick < targetTick) {
+            mCurrentTick++;
+            for (int level = mLevels.length - 1; level > 0; level--) {
+                if ((mCurrentTick & ((1L << (mBits * level)) - 1)) == 0) {
+                    cascade(level, due);
+                }
+            }
+            List<Timeout> bucket = takeBucket(0, (int) (mCurrentTick & mMask));
+            if (bucket != null) {
+                for (Timeout timeout : bucket) {
+                    due.add(timeout.key);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        for (List<Timeout>[] level : mLevels) {
+            for (int i = 0; i < level.length; i++) {
+                level[i] = null;
+            }
+        }
+        mSize = 0;
+    }
+
+    private void cascade(int level, Collection<String> due) {
+        List<Timeout> bucket = takeBucket(level, (int) ((mCurrentTick >>> (mBits * level)) & mMask));
+        if (bucket != null) {
+            for (Timeout timeout : bucket) {
+                schedule(timeout, due);
+            }
+        }
+    }
+
+    private List<Timeout> takeBucket(int level, int index) {
+        List<Timeout> bucket = mLevels[level][index];
+        if (bucket != null) {
+            mLevels[level][index] = null;
+            mSize -= bucket.size();
+        }
+        return bucket;
+    }
+
+    private void schedule(Timeout timeout, Collection<String> due) {
+        // round up, a key is never reported before its deadline
+        long tick = (timeout.deadline + mTickMillis - 1) / mTickMillis;
+        if (tick <= mCurrentTick) {
+            due.add(timeout.key);
+            return;
+        }
+        int top = mLevels.length - 1;
+        for (int level = 0; level <= top; level++) {
+            int shift = mBits * level;
+            if ((tick >>> shift) - (mCurrentTick >>> shift) <= mMask) {
+                add(level, (int) ((tick >>> shift) & mMask), timeout);
+                return;
+            }
+        }
+        // beyond the top level, wait in its furthest bucket and get rescheduled from there
+        int shift = mBits * top;
+        add(top, (int) (((mCurrentTick >>> shift) + mMask) & mMask), timeout);
+    }
+
+    private void add(int level, int index, Timeout timeout) {
+        List<Timeout> bucket = mLevels[level][index];
+        if (bucket == null) {
+            bucket = new ArrayList<>(4);
+            mLevels[level][index] = bucket;
+        }
+        bucket.add(timeout);
+        mSize++;
+    }
+
+    private static final class Timeout {
+        final String key;
+        final long   deadline;
+
+        Timeout(String key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+}
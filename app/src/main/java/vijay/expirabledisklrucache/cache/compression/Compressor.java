@@ -0,0 +1,26 @@
+package vijay.expirabledisklrucache.cache.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Compresses value bytes before they are encrypted and written. The id of the compressor that
+ * wrote an entry is stored in the entry's metadata, so an entry is always read back with the
+ * compressor that wrote it.
+ */
+public interface Compressor {
+
+    /**
+     * Identifies the format on disk, must be between 1 and 127 and never change for a format. Ids
+     * up to 15 are reserved for the compressors shipped with the library.
+     */
+    byte getId();
+
+    byte[] compress(byte[] src, int offset, int length) throws IOException;
+
+    /**
+     * @param in the bytes returned by {@link #compress(byte[], int, int)}
+     * @return the original bytes, closing it must close in
+     */
+    InputStream decompress(InputStream in) throws IOException;
+}
@@ -0,0 +1,66 @@
+package vijay.expirabledisklrucache.cache.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * zlib deflate. Compresses text such as json several times, but costs more cpu than
+ * {@link Lz4Compressor}, especially when compressing.
+ */
+public class DeflateCompressor implements Compressor {
+
+    public static final byte ID          = 1;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final int        mLevel;
+
+    public DeflateCompressor() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level a {@link Deflater} compression level, 1 is fastest and 9 compresses best
+     */
+    public DeflateCompressor(int level) {
+        mLevel = level;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] src, int offset, int length) throws IOException {
+        Deflater deflater = new Deflater(mLevel);
+        try {
+            deflater.setInput(src, offset, length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+            byte[] buffer = new byte[Math.min(BUFFER_SIZE, length + 64)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                // the inflater was passed in, so the stream doesn't release it
+                inf.end();
+                super.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,204 @@
+package vijay.expirabledisklrucache.cache.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import vijay.expirabledisklrucache.cache.utils.ByteStreams;
+
+/**
+ * LZ4 block format, preceded by the original length as a big endian int. Compresses less than
+ * {@link DeflateCompressor} but is many times faster, decompressing in particular.
+ *
+ * The block is produced with a single pass greedy matcher over a 4K entry hash table, like the
+ * reference LZ4 fast mode, and can be decoded by any LZ4 block decoder.
+ */
+public class Lz4Compressor implements Compressor {
+
+    public static final byte ID            = 2;
+
+    private static final int MIN_MATCH     = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT      = 12;
+    private static final int MAX_DISTANCE  = 0xFFFF;
+    private static final int HASH_LOG      = 12;
+    private static final int SKIP_TRIGGER  = 6;
+    private static final int RUN_MASK      = 0x0F;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] src, int offset, int length) throws IOException {
+        byte[] dst = new byte[4 + length + length / 255 + 16];
+        dst[0] = (byte) (length >>> 24);
+        dst[1] = (byte) (length >>> 16);
+        dst[2] = (byte) (length >>> 8);
+        dst[3] = (byte) length;
+        int dstLength = compressBlock(src, offset, length, dst, 4);
+        byte[] result = new byte[dstLength];
+        System.arraycopy(dst, 0, result, 0, dstLength);
+        return result;
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        byte[] block;
+        try {
+            block = ByteStreams.toByteArray(in);
+        } finally {
+            in.close();
+        }
+        if (block.length < 4) {
+            throw new IOException("Truncated lz4 block");
+        }
+        int length = ((block[0] & 0xFF) << 24) | ((block[1] & 0xFF) << 16) | ((block[2] & 0xFF) << 8)
+                | (block[3] & 0xFF);
+        if (length < 0) {
+            throw new IOException("Corrupt lz4 block");
+        }
+        byte[] dst = new byte[length];
+        decompressBlock(block, 4, block.length, dst);
+        return new ByteArrayInputStream(dst);
+    }
+
+    /**
+     * @return the offset in dst after the block
+     */
+    private static int compressBlock(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        int srcEnd = srcOffset + length;
+        int anchor = srcOffset;
+        int op = dstOffset;
+        if (length >= MF_LIMIT + 1) {
+            int mfLimit = srcEnd - MF_LIMIT;
+            int matchLimit = srcEnd - LAST_LITERALS;
+            // positions are stored + 1, so 0 means empty
+            int[] table = new int[1 << HASH_LOG];
+            int ip = srcOffset + 1;
+            int searchMatchCount = 1 << SKIP_TRIGGER;
+            while (ip < mfLimit) {
+                int sequence = readInt(src, ip);
+                int hash = hash(sequence);
+                int ref = table[hash] - 1;
+                table[hash] = ip + 1;
+                if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    // step further the longer nothing matched, so incompressible input is cheap
+                    ip += searchMatchCount++ >>> SKIP_TRIGGER;
+                    continue;
+                }
+                searchMatchCount = 1 << SKIP_TRIGGER;
+                while (ip > anchor && ref > srcOffset && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+                op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        return writeLastLiterals(src, anchor, srcEnd - anchor, dst, op);
+    }
+
+    private static int writeSequence(byte[] src, int literalOffset, int literalLength, int distance,
+            int matchLength, byte[] dst, int op) {
+        int tokenOffset = op++;
+        int token = Math.min(literalLength, RUN_MASK) << 4;
+        op = writeLength(literalLength, dst, op);
+        System.arraycopy(src, literalOffset, dst, op, literalLength);
+        op += literalLength;
+        dst[op++] = (byte) distance;
+        dst[op++] = (byte) (distance >>> 8);
+        token |= Math.min(matchLength - MIN_MATCH, RUN_MASK);
+        op = writeLength(matchLength - MIN_MATCH, dst, op);
+        dst[tokenOffset] = (byte) token;
+        return op;
+    }
+
+    private static int writeLastLiterals(byte[] src, int literalOffset, int literalLength, byte[] dst, int op) {
+        dst[op++] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+        op = writeLength(literalLength, dst, op);
+        System.arraycopy(src, literalOffset, dst, op, literalLength);
+        return op + literalLength;
+    }
+
+    /**
+     * Writes the part of length that doesn't fit the 4 bit token field.
+     */
+    private static int writeLength(int length, byte[] dst, int op) {
+        if (length < RUN_MASK) {
+            return op;
+        }
+        length -= RUN_MASK;
+        while (length >= 0xFF) {
+            dst[op++] = (byte) 0xFF;
+            length -= 0xFF;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static void decompressBlock(byte[] src, int ip, int srcEnd, byte[] dst) throws IOException {
+        int op = 0;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xFF;
+                int literalLength = token >>> 4;
+                if (literalLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLength += b;
+                    } while (b == 0xFF);
+                }
+                if (literalLength > srcEnd - ip || literalLength > dst.length - op) {
+                    throw new IOException("Corrupt lz4 block");
+                }
+                System.arraycopy(src, ip, dst, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+                if (ip == srcEnd) {
+                    break;
+                }
+                int distance = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+                ip += 2;
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 0xFF);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - distance;
+                if (distance == 0 || ref < 0 || matchLength > dst.length - op) {
+                    throw new IOException("Corrupt lz4 block");
+                }
+                // source and destination may overlap, which repeats the last distance bytes
+                for (int end = op + matchLength; op < end;) {
+                    dst[op++] = dst[ref++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated lz4 block", e);
+        }
+        if (op != dst.length) {
+            throw new IOException("Corrupt lz4 block");
+        }
+    }
+
+    private static int readInt(byte[] src, int offset) {
+        return (src[offset] & 0xFF) | ((src[offset + 1] & 0xFF) << 8) | ((src[offset + 2] & 0xFF) << 16)
+                | ((src[offset + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -1,6 +1,8 @@
 package vijay.expirabledisklrucache.cache.security;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import android.content.Context;
 
@@ -14,7 +16,7 @@ import com.facebook.crypto.util.SystemNativeCryptoLibrary;
 /**
  * Created by vijay on 4/11/15.
  */
-public class EncrypterDecrypterConcealImpl implements EncrypterDecrypter {
+public class EncrypterDecrypterConcealImpl implements StreamingEncrypterDecrypter {
 
     // Creates a new Crypto object with default implementations of
     // a key chain as well as native library.
@@ -37,4 +39,16 @@ public class EncrypterDecrypterConcealImpl implements EncrypterDecrypter {
     public byte[] decrypt(byte[] data, String id) throws KeyChainException, CryptoInitializationException, IOException {
         return mCrypto.decrypt(data, new Entity(id));
     }
+
+    @Override
+    public OutputStream getCipherOutputStream(OutputStream out, String id) throws KeyChainException,
+            CryptoInitializationException, IOException {
+        return mCrypto.getCipherOutputStream(out, new Entity(id));
+    }
+
+    @Override
+    public InputStream getCipherInputStream(InputStream in, String id) throws KeyChainException,
+            CryptoInitializationException, IOException {
+        return mCrypto.getCipherInputStream(in, new Entity(id));
+    }
 }
@@ -0,0 +1,24 @@
+package vijay.expirabledisklrucache.cache.security;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An {@link EncrypterDecrypter} that can also encrypt and decrypt streams, so that values go to
+ * and from disk without being held in memory whole. The streams must produce and accept the same
+ * bytes as the byte array methods.
+ */
+public interface StreamingEncrypterDecrypter extends EncrypterDecrypter {
+
+    /**
+     * @return a stream that encrypts what is written to it into out. Closing it must finish the
+     *         ciphertext and close out.
+     */
+    OutputStream getCipherOutputStream(OutputStream out, String id) throws Exception;
+
+    /**
+     * @return a stream of the decrypted contents of in. Reading it to the end must verify the
+     *         ciphertext, closing it must close in.
+     */
+    InputStream getCipherInputStream(InputStream in, String id) throws Exception;
+}
@@ -0,0 +1,667 @@
+package vijay.expirabledisklrucache.cache.serializer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact schema driven binary format. Like Gson it walks the fields of the declared type, but
+ * instead of names and text it writes values only: varints for integral types, fixed width
+ * floating point, length prefixed UTF-8 strings and a single presence byte per reference.
+ *
+ * Because nothing but values is stored, a value has to be read back with the same type it was
+ * written with. Values declared as {@code Object}, an unbound type variable, an abstract class or
+ * an interface other than a collection or map can't be read back, writing one fails; use
+ * {@link GsonSerializer} for such types.
+ *
+ * The first value of each class with fields, and of each enum, is preceded by a hash of the
+ * class's field names and types, or constant names. A value whose classes changed since it was
+ * written fails to read with a {@link SchemaMismatchException} instead of being misread.
+ */
+public class BinarySerializer implements Serializer {
+
+    public static final byte                                  ID           = 2;
+
+    private static final int                                  BUFFER_SIZE  = 512;
+
+    private static final Object                               sUnsafe;
+    private static final Method                               sAllocateInstance;
+
+    private final ConcurrentHashMap<Class<?>, Field[]>        mFields      = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Constructor<?>> mConstructors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Integer>        mSchemaHashes = new ConcurrentHashMap<>();
+
+    static {
+        // same fallback Gson uses for classes without a no-args constructor
+        Object unsafe = null;
+        Method allocateInstance = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            allocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+        } catch (Exception ignored) {
+        }
+        sUnsafe = unsafe;
+        sAllocateInstance = allocateInstance;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public void serialize(Object value, OutputStream out) throws IOException {
+        Sink sink = new Sink(out);
+        write(sink, value, value == null ? Object.class : value.getClass());
+        sink.flush();
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Type type) throws IOException {
+        @SuppressWarnings("unchecked")
+        T value = (T) read(new Source(in), type);
+        return value;
+    }
+
+    private void write(Sink sink, Object value, Type type) throws IOException {
+        Class<?> raw = rawType(type);
+        if (raw.isPrimitive()) {
+            writePrimitive(sink, value, raw);
+            return;
+        }
+        if (value == null) {
+            sink.write(0);
+            return;
+        }
+        if (!isReadable(raw)) {
+            throw new IOException("BinarySerializer can't read back a value declared as " + type);
+        }
+        sink.write(1);
+        if (raw == String.class) {
+            sink.writeString((String) value);
+        } else if (isBoxed(raw)) {
+            writePrimitive(sink, value, unbox(raw));
+        } else if (raw.isEnum() || Enum.class.isAssignableFrom(raw)) {
+            Enum<?> constant = (Enum<?>) value;
+            writeSchemaHash(sink, constant.getDeclaringClass());
+            sink.writeVarLong(constant.ordinal());
+        } else if (raw == byte[].class) {
+            byte[] bytes = (byte[]) value;
+            sink.writeVarLong(bytes.length);
+            sink.write(bytes, 0, bytes.length);
+        } else if (raw.isArray()) {
+            Type componentType = type instanceof GenericArrayType ? ((GenericArrayType) type)
+                    .getGenericComponentType() : raw.getComponentType();
+            int length = Array.getLength(value);
+            sink.writeVarLong(length);
+            for (int i = 0; i < length; i++) {
+                write(sink, Array.get(value, i), componentType);
+            }
+        } else if (value instanceof Collection) {
+            Type elementType = typeArgument(type, 0);
+            Collection<?> collection = (Collection<?>) value;
+            sink.writeVarLong(collection.size());
+            for (Object element : collection) {
+                write(sink, element, elementType);
+            }
+        } else if (value instanceof Map) {
+            Type keyType = typeArgument(type, 0);
+            Type valueType = typeArgument(type, 1);
+            Map<?, ?> map = (Map<?, ?>) value;
+            sink.writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(sink, entry.getKey(), keyType);
+                write(sink, entry.getValue(), valueType);
+            }
+        } else if (value instanceof Date) {
+            sink.writeVarLong(zigZag(((Date) value).getTime()));
+        } else if (value instanceof BigInteger || value instanceof BigDecimal) {
+            sink.writeString(value.toString());
+        } else {
+            writeSchemaHash(sink, raw);
+            for (Field field : fields(raw)) {
+                try {
+                    write(sink, field.get(value), resolve(type, field.getGenericType()));
+                } catch (IllegalAccessException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+
+    private Object read(Source source, Type type) throws IOException {
+        Class<?> raw = rawType(type);
+        if (raw.isPrimitive()) {
+            return readPrimitive(source, raw);
+        }
+        if (source.read() == 0) {
+            return null;
+        }
+        if (raw == Object.class) {
+            throw new IOException("BinarySerializer can't read a value declared as " + type);
+        }
+        if (raw == String.class) {
+            return source.readString();
+        } else if (isBoxed(raw)) {
+            return readPrimitive(source, unbox(raw));
+        } else if (raw.isEnum() || Enum.class.isAssignableFrom(raw)) {
+            Class<?> enumClass = raw.isEnum() ? raw : raw.getSuperclass();
+            checkSchemaHash(source, enumClass);
+            return enumClass.getEnumConstants()[(int) source.readVarLong()];
+        } else if (raw == byte[].class) {
+            byte[] bytes = new byte[(int) source.readVarLong()];
+            source.readFully(bytes);
+            return bytes;
+        } else if (raw.isArray()) {
+            Type componentType = type instanceof GenericArrayType ? ((GenericArrayType) type)
+                    .getGenericComponentType() : raw.getComponentType();
+            int length = (int) source.readVarLong();
+            Object array = Array.newInstance(rawType(componentType), length);
+            for (int i = 0; i < length; i++) {
+                Array.set(array, i, read(source, componentType));
+            }
+            return array;
+        } else if (Collection.class.isAssignableFrom(raw)) {
+            Type elementType = typeArgument(type, 0);
+            int size = (int) source.readVarLong();
+            @SuppressWarnings("unchecked")
+            Collection<Object> collection = (Collection<Object>) newCollection(raw, size);
+            for (int i = 0; i < size; i++) {
+                collection.add(read(source, elementType));
+            }
+            return collection;
+        } else if (Map.class.isAssignableFrom(raw)) {
+            Type keyType = typeArgument(type, 0);
+            Type valueType = typeArgument(type, 1);
+            int size = (int) source.readVarLong();
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> map = (Map<Object, Object>) newMap(raw, size);
+            for (int i = 0; i < size; i++) {
+                Object key = read(source, keyType);
+                map.put(key, read(source, valueType));
+            }
+            return map;
+        } else if (Date.class.isAssignableFrom(raw)) {
+            return new Date(unZigZag(source.readVarLong()));
+        } else if (raw == BigInteger.class) {
+            return new BigInteger(source.readString());
+        } else if (raw == BigDecimal.class) {
+            return new BigDecimal(source.readString());
+        }
+        checkSchemaHash(source, raw);
+        Object instance = newInstance(raw);
+        for (Field field : fields(raw)) {
+            try {
+                field.set(instance, read(source, resolve(type, field.getGenericType())));
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Whether {@link #read} can build a value declared as raw, which needs a concrete class unless
+     * it is a collection or map.
+     */
+    private static boolean isReadable(Class<?> raw) {
+        // array classes are abstract too
+        if (raw.isArray() || raw.isEnum() || Enum.class.isAssignableFrom(raw)
+                || Collection.class.isAssignableFrom(raw) || Map.class.isAssignableFrom(raw)) {
+            return true;
+        }
+        return raw != Object.class && !raw.isInterface() && !Modifier.isAbstract(raw.getModifiers());
+    }
+
+    private void writeSchemaHash(Sink sink, Class<?> type) throws IOException {
+        if (sink.firstUse(type)) {
+            sink.writeFixed(schemaHash(type), 4);
+        }
+    }
+
+    private void checkSchemaHash(Source source, Class<?> type) throws IOException {
+        if (source.firstUse(type) && (int) source.readFixed(4) != schemaHash(type)) {
+            throw new SchemaMismatchException(type);
+        }
+    }
+
+    /**
+     * Hash of the names and types of the fields of type, in the order they are written, or of its
+     * constant names if it is an enum.
+     */
+    private int schemaHash(Class<?> type) {
+        Integer hash = mSchemaHashes.get(type);
+        if (hash != null) {
+            return hash;
+        }
+        StringBuilder schema = new StringBuilder();
+        if (type.isEnum()) {
+            for (Object constant : type.getEnumConstants()) {
+                schema.append(((Enum<?>) constant).name()).append(';');
+            }
+        } else {
+            for (Field field : fields(type)) {
+                schema.append(field.getName()).append(':');
+                appendTypeName(schema, field.getGenericType());
+                schema.append(';');
+            }
+        }
+        // String.hashCode is specified, so the hash is the same on every runtime
+        hash = schema.toString().hashCode();
+        mSchemaHashes.put(type, hash);
+        return hash;
+    }
+
+    /**
+     * Appends a name for type that doesn't depend on how the runtime formats types.
+     */
+    private static void appendTypeName(StringBuilder out, Type type) {
+        if (type instanceof Class) {
+            out.append(((Class<?>) type).getName());
+        } else if (type instanceof ParameterizedType) {
+            appendTypeName(out, ((ParameterizedType) type).getRawType());
+            out.append('<');
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            for (int i = 0; i < arguments.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendTypeName(out, arguments[i]);
+            }
+            out.append('>');
+        } else if (type instanceof GenericArrayType) {
+            appendTypeName(out, ((GenericArrayType) type).getGenericComponentType());
+            out.append("[]");
+        } else if (type instanceof WildcardType) {
+            out.append('?');
+            appendTypeName(out, ((WildcardType) type).getUpperBounds()[0]);
+        } else {
+            out.append(((TypeVariable<?>) type).getName());
+        }
+    }
+
+    private static void writePrimitive(Sink sink, Object value, Class<?> type) throws IOException {
+        if (type == int.class) {
+            sink.writeVarLong(zigZag((Integer) value));
+        } else if (type == long.class) {
+            sink.writeVarLong(zigZag((Long) value));
+        } else if (type == boolean.class) {
+            sink.write((Boolean) value ? 1 : 0);
+        } else if (type == double.class) {
+            sink.writeFixed(Double.doubleToLongBits((Double) value), 8);
+        } else if (type == float.class) {
+            sink.writeFixed(Float.floatToIntBits((Float) value), 4);
+        } else if (type == short.class) {
+            sink.writeVarLong(zigZag((Short) value));
+        } else if (type == byte.class) {
+            sink.write((Byte) value);
+        } else if (type == char.class) {
+            sink.writeVarLong((Character) value);
+        } else {
+            throw new AssertionError(type);
+        }
+    }
+
+    private static Object readPrimitive(Source source, Class<?> type) throws IOException {
+        if (type == int.class) {
+            return (int) unZigZag(source.readVarLong());
+        } else if (type == long.class) {
+            return unZigZag(source.readVarLong());
+        } else if (type == boolean.class) {
+            return source.read() != 0;
+        } else if (type == double.class) {
+            return Double.longBitsToDouble(source.readFixed(8));
+        } else if (type == float.class) {
+            return Float.intBitsToFloat((int) source.readFixed(4));
+        } else if (type == short.class) {
+            return (short) unZigZag(source.readVarLong());
+        } else if (type == byte.class) {
+            return (byte) source.read();
+        } else if (type == char.class) {
+            return (char) source.readVarLong();
+        }
+        throw new AssertionError(type);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static boolean isBoxed(Class<?> type) {
+        return type == Integer.class || type == Long.class || type == Boolean.class || type == Double.class
+                || type == Float.class || type == Short.class || type == Byte.class || type == Character.class;
+    }
+
+    private static Class<?> unbox(Class<?> type) {
+        if (type == Integer.class) {
+            return int.class;
+        } else if (type == Long.class) {
+            return long.class;
+        } else if (type == Boolean.class) {
+            return boolean.class;
+        } else if (type == Double.class) {
+            return double.class;
+        } else if (type == Float.class) {
+            return float.class;
+        } else if (type == Short.class) {
+            return short.class;
+        } else if (type == Byte.class) {
+            return byte.class;
+        }
+        return char.class;
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        } else if (type instanceof GenericArrayType) {
+            Class<?> component = rawType(((GenericArrayType) type).getGenericComponentType());
+            return Array.newInstance(component, 0).getClass();
+        } else if (type instanceof WildcardType) {
+            return rawType(((WildcardType) type).getUpperBounds()[0]);
+        }
+        // unresolved type variable
+        return Object.class;
+    }
+
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+
+    /**
+     * Resolves a field type declared with a type variable of its class against the parameterized
+     * type of the instance, e.g. {@code T item} in a {@code Page<Item>}.
+     */
+    private static Type resolve(Type owner, Type fieldType) {
+        if (!(fieldType instanceof TypeVariable) || !(owner instanceof ParameterizedType)) {
+            return fieldType;
+        }
+        ParameterizedType parameterized = (ParameterizedType) owner;
+        TypeVariable<?>[] variables = ((Class<?>) parameterized.getRawType()).getTypeParameters();
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(fieldType)) {
+                return parameterized.getActualTypeArguments()[i];
+            }
+        }
+        return fieldType;
+    }
+
+    private Field[] fields(Class<?> type) {
+        Field[] fields = mFields.get(type);
+        if (fields != null) {
+            return fields;
+        }
+        List<Field> list = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            List<Field> declared = new ArrayList<>();
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                declared.add(field);
+            }
+            // declaration order isn't guaranteed by reflection, names are stable
+            Field[] sorted = declared.toArray(new Field[declared.size()]);
+            Arrays.sort(sorted, new Comparator<Field>() {
+                @Override
+                public int compare(Field lhs, Field rhs) {
+                    return lhs.getName().compareTo(rhs.getName());
+                }
+            });
+            list.addAll(0, Arrays.asList(sorted));
+        }
+        fields = list.toArray(new Field[list.size()]);
+        mFields.put(type, fields);
+        return fields;
+    }
+
+    private Object newInstance(Class<?> type) throws IOException {
+        try {
+            Constructor<?> constructor = mConstructors.get(type);
+            if (constructor == null) {
+                try {
+                    constructor = type.getDeclaredConstructor();
+                    constructor.setAccessible(true);
+                    mConstructors.put(type, constructor);
+                } catch (NoSuchMethodException e) {
+                    constructor = null;
+                }
+            }
+            if (constructor != null) {
+                return constructor.newInstance();
+            }
+            if (sAllocateInstance == null) {
+                throw new IOException("No no-args constructor for " + type);
+            }
+            return sAllocateInstance.invoke(sUnsafe, type);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Unable to create " + type, e);
+        }
+    }
+
+    private Object newCollection(Class<?> type, int size) throws IOException {
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            return newInstance(type);
+        }
+        if (SortedSet.class.isAssignableFrom(type)) {
+            return new TreeSet<Object>();
+        } else if (Set.class.isAssignableFrom(type)) {
+            return new LinkedHashSet<Object>(size * 4 / 3 + 1);
+        } else if (Queue.class.isAssignableFrom(type)) {
+            return new ArrayDeque<Object>(Math.max(size, 1));
+        }
+        return new ArrayList<Object>(size);
+    }
+
+    private Object newMap(Class<?> type, int size) throws IOException {
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            return newInstance(type);
+        }
+        if (SortedMap.class.isAssignableFrom(type)) {
+            return new TreeMap<Object, Object>();
+        }
+        return new LinkedHashMap<Object, Object>(size * 4 / 3 + 1);
+    }
+
+    /**
+     * Buffered output, avoiding the per byte synchronization of the java.io buffered streams.
+     */
+    private static final class Sink {
+        private final OutputStream mOut;
+        private final byte[]       mBuffer   = new byte[BUFFER_SIZE];
+        private int                mPosition;
+        private Set<Class<?>>      mClasses;
+
+        Sink(OutputStream out) {
+            mOut = out;
+        }
+
+        void write(int b) throws IOException {
+            if (mPosition == mBuffer.length) {
+                flushBuffer();
+            }
+            mBuffer[mPosition++] = (byte) b;
+        }
+
+        void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > mBuffer.length - mPosition) {
+                flushBuffer();
+                if (length > mBuffer.length) {
+                    mOut.write(bytes, offset, length);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, offset, mBuffer, mPosition, length);
+            mPosition += length;
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                write(((int) value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeFixed(long value, int bytes) throws IOException {
+            for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes("UTF-8");
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * @return true the first time type is passed, when its schema hash is written
+         */
+        boolean firstUse(Class<?> type) {
+            if (mClasses == null) {
+                mClasses = new HashSet<>();
+            }
+            return mClasses.add(type);
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            mOut.flush();
+        }
+
+        private void flushBuffer() throws IOException {
+            if (mPosition > 0) {
+                mOut.write(mBuffer, 0, mPosition);
+                mPosition = 0;
+            }
+        }
+    }
+
+    private static final class Source {
+        private final InputStream mIn;
+        private final byte[]      mBuffer   = new byte[BUFFER_SIZE];
+        private int               mPosition;
+        private int               mLimit;
+        private Set<Class<?>>     mClasses;
+
+        Source(InputStream in) {
+            mIn = in;
+        }
+
+        int read() throws IOException {
+            if (mPosition == mLimit) {
+                fill();
+            }
+            return mBuffer[mPosition++] & 0xFF;
+        }
+
+        void readFully(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (mPosition == mLimit) {
+                    fill();
+                }
+                int count = Math.min(bytes.length - offset, mLimit - mPosition);
+                System.arraycopy(mBuffer, mPosition, bytes, offset, count);
+                mPosition += count;
+                offset += count;
+            }
+        }
+
+        long readVarLong() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long readFixed(int bytes) throws IOException {
+            long result = 0;
+            for (int i = 0; i < bytes; i++) {
+                result = (result << 8) | read();
+            }
+            return result;
+        }
+
+        /**
+         * @return true the first time type is passed, when its schema hash is read
+         */
+        boolean firstUse(Class<?> type) {
+            if (mClasses == null) {
+                mClasses = new HashSet<>();
+            }
+            return mClasses.add(type);
+        }
+
+        String readString() throws IOException {
+            byte[] bytes = new byte[(int) readVarLong()];
+            readFully(bytes);
+            return new String(bytes, "UTF-8");
+        }
+
+        private void fill() throws IOException {
+            mLimit = mIn.read(mBuffer, 0, mBuffer.length);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                throw new EOFException();
+            }
+        }
+    }
+}
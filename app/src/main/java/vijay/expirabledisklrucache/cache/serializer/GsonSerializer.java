@@ -0,0 +1,91 @@
+package vijay.expirabledisklrucache.cache.serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Stores values as UTF-8 json. This is the format of every entry written before serializers
+ * became pluggable.
+ */
+public class GsonSerializer implements Serializer {
+
+    public static final byte    ID    = 1;
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final Gson          mGson;
+
+    public GsonSerializer() {
+        this(new Gson());
+    }
+
+    public GsonSerializer(Gson gson) {
+        mGson = gson;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public void serialize(Object value, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, UTF_8);
+        try {
+            mGson.toJson(value, writer);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+        writer.flush();
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Type type) throws IOException {
+        try {
+            return mGson.fromJson(new InputStreamReader(in, UTF_8), type);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Like {@link #serialize(Object, OutputStream)}, but writes value as its declared type rather
+     * than its runtime class, so elements of a {@code List<Foo>} are written as Foos.
+     */
+    public void serialize(Object value, ValueType<?> type, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, UTF_8);
+        try {
+            mGson.toJson(value, type.getType(), writer);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Like {@link #deserialize(InputStream, Type)}, but reads with the adapter that type remembers,
+     * without looking it up in gson.
+     */
+    public <T> T deserialize(InputStream in, ValueType<T> type) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, UTF_8));
+        // as lenient as Gson.fromJson
+        reader.setLenient(true);
+        try {
+            return type.getAdapter(mGson).read(reader);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        } catch (IllegalStateException e) {
+            // thrown by adapters on unexpected tokens
+            throw new IOException(e);
+        }
+    }
+}
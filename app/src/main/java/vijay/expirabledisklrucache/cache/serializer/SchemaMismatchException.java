@@ -0,0 +1,16 @@
+package vijay.expirabledisklrucache.cache.serializer;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a serializer reading a value written with a different version of one of its classes.
+ * The cache treats the entry as missing and removes it.
+ */
+public class SchemaMismatchException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SchemaMismatchException(Class<?> type) {
+        super("Value was written with another version of " + type.getName());
+    }
+}
@@ -0,0 +1,23 @@
+package vijay.expirabledisklrucache.cache.serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Turns cached values into bytes and back. The id of the serializer that wrote an entry is stored
+ * in the entry's metadata, so an entry is always read back with the serializer that wrote it.
+ */
+public interface Serializer {
+
+    /**
+     * Identifies the format on disk, must be between 1 and 127 and never change for a format. Ids
+     * up to 15 are reserved for the serializers shipped with the library.
+     */
+    byte getId();
+
+    void serialize(Object value, OutputStream out) throws IOException;
+
+    <T> T deserialize(InputStream in, Type type) throws IOException;
+}
@@ -0,0 +1,90 @@
+package vijay.expirabledisklrucache.cache.serializer;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import vijay.expirabledisklrucache.cache.utils.Primitives;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * The type of cached values, generic ones like {@code List<Foo>} included. Create one per type and
+ * keep it, in a constant say:
+ *
+ * <pre>
+ * static final ValueType&lt;List&lt;Foo&gt;&gt; FOOS = new ValueType&lt;List&lt;Foo&gt;&gt;() {};
+ * </pre>
+ *
+ * It remembers the Gson TypeAdapter of its type once resolved, so reads with it skip Gson's
+ * adapter lookup, which takes a lock shared by all threads on every call.
+ */
+public class ValueType<T> {
+
+    private final TypeToken<T>          mToken;
+    private volatile ResolvedAdapter<T> mAdapter;
+
+    /**
+     * Captures the type argument of an anonymous subclass.
+     */
+    @SuppressWarnings("unchecked")
+    protected ValueType() {
+        Type superclass = getClass().getGenericSuperclass();
+        if (!(superclass instanceof ParameterizedType)) {
+            throw new IllegalStateException("Create as new ValueType<Foo>() {} to capture the type");
+        }
+        mToken = (TypeToken<T>) TypeToken.get(((ParameterizedType) superclass).getActualTypeArguments()[0]);
+    }
+
+    private ValueType(TypeToken<T> token) {
+        mToken = token;
+    }
+
+    /**
+     * @param type the class of values, primitive classes stand for their wrapper
+     */
+    public static <T> ValueType<T> of(Class<T> type) {
+        // values are always boxed, an int.class token would miss every one of them
+        return new ValueType<>(TypeToken.get(Primitives.wrap(type)));
+    }
+
+    public Type getType() {
+        return mToken.getType();
+    }
+
+    /**
+     * The class values of this type are instances of, {@code List} for {@code List<Foo>}.
+     */
+    public Class<? super T> getRawType() {
+        return mToken.getRawType();
+    }
+
+    /**
+     * @return the adapter gson has for this type, looked up on the first call with gson
+     */
+    TypeAdapter<T> getAdapter(Gson gson) {
+        ResolvedAdapter<T> resolved = mAdapter;
+        if (resolved == null || resolved.mGson != gson) {
+            resolved = new ResolvedAdapter<>(gson, gson.getAdapter(mToken));
+            mAdapter = resolved;
+        }
+        return resolved.mAdapter;
+    }
+
+    @Override
+    public String toString() {
+        return "ValueType{" + mToken.getType() + "}";
+    }
+
+    private static final class ResolvedAdapter<T> {
+
+        private final Gson           mGson;
+        private final TypeAdapter<T> mAdapter;
+
+        ResolvedAdapter(Gson gson, TypeAdapter<T> adapter) {
+            mGson = gson;
+            mAdapter = adapter;
+        }
+    }
+}
@@ -137,6 +137,21 @@ public final class ByteStreams {
     return total;
   }
 
+  /**
+   * Reads and discards data from the given {@code InputStream} until the end
+   * of the stream is reached. Returns the total number of bytes read. Does not
+   * close the stream.
+   */
+  public static long exhaust(InputStream in) throws IOException {
+    long total = 0;
+    long read;
+    byte[] buf = new byte[BUF_SIZE];
+    while ((read = in.read(buf)) != -1) {
+      total += read;
+    }
+    return total;
+  }
+
   /**
    * Reads all bytes from an input stream into a byte array.
    * Does not close the stream.
@@ -0,0 +1,92 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+import android.os.Process;
+
+/**
+ * Entries that expire a span after they were last read.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class AccessExpiryTest {
+
+    private final ManualClock     mClock = new ManualClock();
+
+    private ExpirableDiskLruCache mCache;
+
+    @Before
+    public void setUp() throws Exception {
+        Clock.set(mClock);
+        mCache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "session", 10000l).build();
+        // touches and refreshes then run in order with the barrier of awaitBackgroundWrites()
+        mCache.setAsyncExecutor(1, 16, Process.THREAD_PRIORITY_BACKGROUND);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Clock.set(Clock.SYSTEM);
+        mCache.removeAll();
+        mCache.close();
+    }
+
+    @Test
+    public void shouldExpireAfterAccess() throws Exception {
+        mCache.putExpireAfterAccess("key", "value", 1000l);
+
+        for (int i = 0; i < 5; i++) {
+            mClock.advance(300);
+            assertThat(mCache.get("key", String.class)).isEqualTo("value");
+            awaitBackgroundWrites();
+        }
+
+        mClock.advance(1200);
+        assertThat(mCache.get("key", String.class)).isEqualTo(null);
+    }
+
+    @Test
+    public void shouldExpireAfterAccessOnceRefreshed() throws Exception {
+        mCache.enableRefreshAhead(0.5, new ExpirableDiskLruCache.Loader<String>() {
+            @Override
+            public String load(String key) throws Exception {
+                return "fresh";
+            }
+        });
+
+        mCache.putExpireAfterAccess("key", "value", 1000l);
+        mClock.advance(600);
+        assertThat(mCache.get("key", String.class)).isEqualTo("value");
+        awaitBackgroundWrites();
+        mCache.disableRefreshAhead();
+        assertThat(mCache.get("key", String.class)).isEqualTo("fresh");
+
+        for (int i = 0; i < 5; i++) {
+            mClock.advance(300);
+            assertThat(mCache.get("key", String.class)).isEqualTo("fresh");
+            awaitBackgroundWrites();
+        }
+
+        mClock.advance(1200);
+        assertThat(mCache.get("key", String.class)).isEqualTo(null);
+    }
+
+    /**
+     * Waits for the metadata touches and refreshes started so far, which are queued ahead of this
+     * get on the single executor thread.
+     */
+    private void awaitBackgroundWrites() throws Exception {
+        mCache.getAsync("barrier", String.class).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,53 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Keeping entries that are read less often than the ones they would evict out of a full cache.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class AdmissionFilterTest {
+
+    @Test
+    public void shouldRejectColdEntriesWhenFull() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "admission",
+                3000l).build();
+        char[] chars = new char[500];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        try {
+            cache.enableAdmissionFilter(8);
+            for (int i = 0; i < 5; i++) {
+                cache.put("hot" + i, value);
+                for (int j = 0; j < 3; j++) {
+                    cache.get("hot" + i, String.class);
+                }
+            }
+
+            cache.setMemoryCacheSize(10000);
+
+            cache.put("cold", value);
+
+            assertThat(cache.get("cold", String.class)).isEqualTo(null);
+            assertThat(cache.getMemoryCacheHitCount()).isEqualTo(0);
+            assertThat(cache.getStats().getRejectionCount()).isEqualTo(1);
+            for (int i = 0; i < 5; i++) {
+                assertThat(cache.get("hot" + i, String.class)).isEqualTo(value);
+            }
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Operations run on the cache executor, and the futures they return.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class AsyncTest {
+
+    @Test
+    public void shouldPutAndGetAsync() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "async",
+                10000l).build();
+        try {
+            cache.putAsync("key", "value", 10000l).get();
+
+            assertThat(cache.getAsync("key", String.class).get()).isEqualTo("value");
+            assertThat(cache.getAsyncExecutorStats().getExecutedCount()).isEqualTo(2);
+
+            cache.removeAsync("key").get();
+
+            assertThat(cache.get("key", String.class)).isEqualTo(null);
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
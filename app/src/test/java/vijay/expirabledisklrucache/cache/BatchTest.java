@@ -0,0 +1,138 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Operations on several keys, which flush the journal once.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class BatchTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldFlushJournalWhenBatchIsClosed() throws Exception {
+        File dir = mFolder.newFolder("batch");
+        File journal = new File(dir, SimpleDiskCache.JOURNAL_FILE);
+        SimpleDiskCache cache = SimpleDiskCache.open(dir, 1, 100000l);
+        try {
+            long journalBytes = journal.length();
+
+            SimpleDiskCache.Batch batch = cache.newBatch();
+            for (int i = 0; i < 10; i++) {
+                write(batch, "key" + i, "value" + i);
+            }
+            batch.remove("key0");
+            assertThat(journal.length()).isEqualTo(journalBytes);
+            batch.close();
+
+            assertThat(journal.length()).isGreaterThan(journalBytes);
+            assertThat(cache.getString("key1").getString()).isEqualTo("value1");
+        } finally {
+            cache.close();
+        }
+
+        cache = SimpleDiskCache.open(dir, 1, 100000l);
+        try {
+            assertThat(cache.getString("key0")).isNull();
+            assertThat(cache.getString("key9").getString()).isEqualTo("value9");
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldFlushJournalOnceEveryBatchIsClosed() throws Exception {
+        File dir = mFolder.newFolder("nested");
+        File journal = new File(dir, SimpleDiskCache.JOURNAL_FILE);
+        SimpleDiskCache cache = SimpleDiskCache.open(dir, 1, 100000l);
+        try {
+            long journalBytes = journal.length();
+            SimpleDiskCache.Batch first = cache.newBatch();
+            SimpleDiskCache.Batch second = cache.newBatch();
+            write(first, "first", "value");
+            write(second, "second", "value");
+
+            second.close();
+            assertThat(journal.length()).isEqualTo(journalBytes);
+            first.close();
+            assertThat(journal.length()).isGreaterThan(journalBytes);
+
+            // edits outside a batch are flushed right away again
+            journalBytes = journal.length();
+            cache.put("third", "value");
+            assertThat(journal.length()).isGreaterThan(journalBytes);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldCloseBatchWhoseJournalWasRebuilt() throws Exception {
+        File dir = mFolder.newFolder("rebuilt");
+        SimpleDiskCache cache = SimpleDiskCache.open(dir, 1, 100000l);
+        try {
+            SimpleDiskCache.Batch batch = cache.newBatch();
+            write(batch, "key", "value");
+            write(batch, "key", "value");
+            cache.compact(1);
+            write(batch, "other", "value");
+            batch.close();
+
+            assertThat(cache.getString("key").getString()).isEqualTo("value");
+            assertThat(cache.getString("other").getString()).isEqualTo("value");
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldPutGetAndRemoveAll() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "batch",
+                10000l).build();
+        Map<String, String> values = new HashMap<>();
+        values.put("key1", "value1");
+        values.put("key2", "value2");
+        try {
+            assertThat(cache.putAll(values, 10000l)).isEmpty();
+
+            BatchResult<String> result = cache.getAll(Arrays.asList("key1", "key2", "key3"), String.class);
+            assertThat(result.getValues()).isEqualTo(values);
+            assertThat(result.hasFailures()).isFalse();
+
+            assertThat(cache.removeAll(values.keySet())).isEmpty();
+
+            assertThat(cache.getAll(values.keySet(), String.class).getValues()).isEmpty();
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+
+    private static void write(SimpleDiskCache.Batch batch, String key, String value) throws Exception {
+        OutputStream out = batch.openStream(key, new EntryMetadata());
+        try {
+            out.write(value.getBytes());
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+import android.graphics.Bitmap;
+
+/**
+ * Bitmaps put compressed and decoded when read, into bitmaps of a {@link BitmapPool}.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class BitmapTest {
+
+    private final ManualClock mClock = new ManualClock();
+
+    @Before
+    public void setUp() {
+        Clock.set(mClock);
+    }
+
+    @After
+    public void tearDown() {
+        Clock.set(Clock.SYSTEM);
+    }
+
+    @Test
+    public void shouldPutAndGetBitmaps() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "images",
+                100000l).build();
+        BitmapPool pool = new BitmapPool(1024 * 1024);
+        try {
+            cache.putBitmap("image", Bitmap.createBitmap(64, 48, Bitmap.Config.ARGB_8888),
+                    Bitmap.CompressFormat.PNG, 100, 500l);
+
+            Bitmap bitmap = cache.getBitmap("image", 32, 24, Bitmap.Config.ARGB_8888, pool);
+            assertThat(bitmap).isNotNull();
+            pool.put(bitmap);
+            assertThat(pool.getSize()).isGreaterThan(0);
+            assertThat(pool.get(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig())).isSameAs(bitmap);
+            assertThat(pool.get(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig())).isNull();
+
+            mClock.advance(600);
+            assertThat(cache.getBitmap("image")).isNull();
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
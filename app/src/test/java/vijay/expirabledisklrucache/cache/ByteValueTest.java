@@ -0,0 +1,37 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Values put and read as bytes, without a serializer.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class ByteValueTest {
+
+    @Test
+    public void shouldPutAndGetBytes() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "bytes",
+                10000l).build();
+        byte[] bytes = { 1, 2, 3, 4 };
+        try {
+            cache.putBytes("key", ByteBuffer.wrap(bytes), 10000l);
+
+            assertThat(cache.getBytes("key")).isEqualTo(bytes);
+            assertThat(cache.getByteBuffer("key")).isEqualTo(ByteBuffer.wrap(bytes));
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Counters behind {@link CacheStats}.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class CacheStatsTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldRecordStats() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "stats",
+                10000l).build();
+        try {
+            cache.put("key", "value");
+            cache.get("key", String.class);
+            cache.get("missing", String.class);
+            cache.remove("key");
+
+            CacheStats stats = cache.getStats();
+            assertThat(stats.getPutCount()).isEqualTo(1);
+            assertThat(stats.getHitCount()).isEqualTo(1);
+            assertThat(stats.getMissCount()).isEqualTo(1);
+            assertThat(stats.getRemoveCount()).isEqualTo(1);
+            assertThat(stats.getBytesRead()).isEqualTo(stats.getBytesWritten());
+            assertThat(stats.getGetLatency().getCount()).isEqualTo(2);
+            assertThat(stats.getGetLatency().getPercentileNanos(100))
+                    .isEqualTo(stats.getGetLatency().getMaxNanos());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldCountEvictedEntries() throws Exception {
+        SimpleDiskCache cache = SimpleDiskCache.open(mFolder.newFolder("evict"), 1, 10000l);
+        CacheMetrics metrics = new CacheMetrics();
+        cache.setMetrics(metrics);
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        try {
+            for (int i = 0; i < 30; i++) {
+                cache.put("key" + i, value);
+            }
+            int evicted = 0;
+            for (int i = 0; i < 30; i++) {
+                if (cache.getString("key" + i) == null) {
+                    evicted++;
+                }
+            }
+
+            CacheStats stats = metrics.snapshot();
+            assertThat(evicted).isGreaterThan(1);
+            assertThat(stats.getEvictionCount()).isEqualTo(evicted);
+            assertThat(stats.getEvictedBytes()).isGreaterThanOrEqualTo(evicted * 1000l);
+        } finally {
+            cache.close();
+        }
+    }
+}
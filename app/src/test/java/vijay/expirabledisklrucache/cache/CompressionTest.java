@@ -0,0 +1,45 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.compression.Lz4Compressor;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+import com.google.gson.Gson;
+
+/**
+ * Values compressed on their way to disk.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class CompressionTest {
+
+    @Test
+    public void shouldPutAndGetCompressed() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "compressed",
+                10000l).setCompressor(new Lz4Compressor(), 100).build();
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'a');
+        String value = new String(chars);
+        byte[] json = new Gson().toJson(value).getBytes("utf-8");
+        try {
+            cache.put("key", value);
+
+            assertThat(cache.get("key", String.class)).isEqualTo(value);
+            assertThat(cache.getBytes("key")).isEqualTo(json);
+            assertThat(cache.getCompressionStats().getCompressedCount()).isEqualTo(1);
+            assertThat(cache.getCompressionStats().getCompressionRatio()).isGreaterThan(10);
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
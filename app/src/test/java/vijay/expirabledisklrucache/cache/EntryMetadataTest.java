@@ -0,0 +1,111 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.HashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Entry metadata as it is stored on disk, including what earlier versions wrote.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class EntryMetadataTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadLegacyMetadataFiles() throws Exception {
+        File dir = mFolder.newFolder("legacy");
+        long evictionTime = System.currentTimeMillis() + 60000;
+        SimpleDiskCache cache = SimpleDiskCache.open(dir, 1, 10000l);
+        cache.put("key", "value", new EntryMetadata(evictionTime));
+        String internalKey = cache.toInternalKey("key");
+        cache.close();
+
+        HashMap<String, Serializable> legacy = new HashMap<String, Serializable>();
+        legacy.put(EntryMetadata.LEGACY_EVICTION_TIME, evictionTime);
+        legacy.put("tag", "images");
+        legacy.put("date", new Date());
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(new File(dir, internalKey + ".1")));
+        try {
+            out.writeObject(legacy);
+        } finally {
+            out.close();
+        }
+
+        cache = SimpleDiskCache.open(dir, 1, 10000l);
+        try {
+            SimpleDiskCache.StringEntry entry = cache.getString("key");
+            assertThat(entry.getString()).isEqualTo("value");
+            assertThat(cache.peekEvictionTime("key")).isEqualTo(evictionTime);
+            EntryMetadata metadata = entry.getMetadata();
+            assertThat(metadata.isLegacy()).isTrue();
+            assertThat(metadata.getEvictionTime()).isEqualTo(evictionTime);
+            assertThat(metadata.getCodecId()).isEqualTo(EntryMetadata.CODEC_UNSPECIFIED);
+            assertThat(metadata.getExtra("tag")).isEqualTo("images");
+            // not representable as an extra
+            assertThat(metadata.getExtra("date")).isNull();
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldRoundTripTypedExtras() throws Exception {
+        EntryMetadata metadata = new EntryMetadata(1234l);
+        metadata.setFlag(EntryMetadata.FLAG_ENCRYPTED, true);
+        metadata.setCodecId((byte) 2);
+        metadata.setCompressorId((byte) 1);
+        metadata.setValueLength(42);
+        metadata.putExtra("long", Long.MAX_VALUE);
+        metadata.putExtra("int", -7);
+        metadata.putExtra("boolean", true);
+        metadata.putExtra("string", "caf\u00e9");
+        metadata.putExtra("bytes", new byte[] { 1, 2, 3 });
+
+        EntryMetadata decoded = EntryMetadata.decode(metadata.encode());
+
+        assertThat(decoded.getVersion()).isEqualTo(EntryMetadata.VERSION);
+        assertThat(decoded.hasFlag(EntryMetadata.FLAG_ENCRYPTED)).isTrue();
+        assertThat(decoded.getCodecId()).isEqualTo((byte) 2);
+        assertThat(decoded.getCompressorId()).isEqualTo((byte) 1);
+        assertThat(decoded.getEvictionTime()).isEqualTo(1234l);
+        assertThat(decoded.getCreatedAt()).isEqualTo(metadata.getCreatedAt());
+        assertThat(decoded.getValueLength()).isEqualTo(42l);
+        assertThat(decoded.getExtra("long")).isEqualTo(Long.MAX_VALUE);
+        assertThat(decoded.getExtra("int")).isEqualTo(-7);
+        assertThat(decoded.getExtra("boolean")).isEqualTo(true);
+        assertThat(decoded.getExtra("string")).isEqualTo("caf\u00e9");
+        assertThat((byte[]) decoded.getExtra("bytes")).isEqualTo(new byte[] { 1, 2, 3 });
+    }
+
+    @Test
+    public void shouldRejectUnknownVersions() throws Exception {
+        byte[] bytes = new EntryMetadata(1234l).encode();
+        bytes[2] = (byte) (EntryMetadata.VERSION + 1);
+
+        try {
+            EntryMetadata.decode(bytes);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).contains("Unsupported metadata version");
+        }
+    }
+}
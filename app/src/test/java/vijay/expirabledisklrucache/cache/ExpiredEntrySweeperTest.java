@@ -0,0 +1,79 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Removing expired entries in the background.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class ExpiredEntrySweeperTest {
+
+    @Rule
+    public TemporaryFolder    mFolder = new TemporaryFolder();
+
+    private final ManualClock mClock  = new ManualClock();
+
+    @Before
+    public void setUp() {
+        Clock.set(mClock);
+    }
+
+    @After
+    public void tearDown() {
+        Clock.set(Clock.SYSTEM);
+    }
+
+    @Test
+    public void shouldSweepExpiredEntries() throws Exception {
+        SimpleDiskCache cache = SimpleDiskCache.open(mFolder.newFolder("sweep"), 1, 10000l);
+        try {
+            // ticked by hand rather than started on its own thread
+            ExpiredEntrySweeper sweeper = new ExpiredEntrySweeper(cache, 50, 10);
+            cache.setEvictionTimeListener(sweeper);
+            cache.put("key", "value", new EntryMetadata(Clock.now() + 100));
+
+            sweeper.run();
+            assertThat(sweeper.stats().getRemovedCount()).isEqualTo(0);
+
+            mClock.advance(200);
+            sweeper.run();
+
+            assertThat(sweeper.stats().getRemovedCount()).isEqualTo(1);
+            assertThat(cache.contains("key")).isFalse();
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldScheduleEntriesOnceForTheSweeper() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "swept",
+                10000l).build();
+        try {
+            cache.enableExpiredEntrySweeper(50, 10);
+
+            cache.put("key", "value", 10000l);
+            for (int i = 0; i < 100; i++) {
+                assertThat(cache.get("key", String.class)).isEqualTo("value");
+            }
+
+            assertThat(cache.getSweeperStats().getScheduledCount()).isEqualTo(1);
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Answering contains() and misses from the eviction times kept in memory.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class ExpiryIndexTest {
+
+    private final ManualClock mClock = new ManualClock();
+
+    @Before
+    public void setUp() {
+        Clock.set(mClock);
+    }
+
+    @After
+    public void tearDown() {
+        Clock.set(Clock.SYSTEM);
+    }
+
+    @Test
+    public void shouldNotContainExpiredEntries() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "index",
+                10000l).build();
+        try {
+            assertThat(cache.contains("key")).isFalse();
+
+            cache.put("key", "value", 500l);
+
+            assertThat(cache.contains("key")).isTrue();
+
+            mClock.advance(600);
+            assertThat(cache.contains("key")).isFalse();
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Opening and closing the cache, and opening it again.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class InitTest {
+
+    private final ExpirableDiskLruCache mCache = ExpirableDiskLruCache.getInstance();
+
+    @After
+    public void tearDown() throws Exception {
+        if (mCache.getInitStats() != null) {
+            mCache.removeAll();
+            mCache.close();
+        }
+    }
+
+    @Test
+    public void shouldReopenWhenInitializedAgain() throws Exception {
+        mCache.init(RuntimeEnvironment.application, 10000l);
+        mCache.put("key", "value", 10000l);
+
+        mCache.init(RuntimeEnvironment.application, 10000l);
+
+        assertThat(mCache.get("key", String.class)).isEqualTo("value");
+    }
+
+    @Test
+    public void shouldFailOperationsAfterClose() throws Exception {
+        mCache.init(RuntimeEnvironment.application, 10000l);
+        mCache.close();
+
+        assertThat(mCache.getInitStats()).isNull();
+        try {
+            mCache.get("key", String.class);
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).contains("init()");
+        }
+
+        mCache.init(RuntimeEnvironment.application, 10000l);
+        mCache.put("key", "value", 10000l);
+        assertThat(mCache.get("key", String.class)).isEqualTo("value");
+    }
+
+    @Test
+    public void shouldReopenWhenInitializedAsyncAgain() throws Exception {
+        Future<Void> first = mCache.initAsync(RuntimeEnvironment.application, 10000l, false, false, 5000);
+        Future<Void> second = mCache.initAsync(RuntimeEnvironment.application, 10000l, false, false, 5000);
+
+        first.get();
+        second.get();
+        mCache.put("key", "value", 10000l);
+        assertThat(mCache.get("key", String.class)).isEqualTo("value");
+    }
+
+    @Test
+    public void shouldInitAsync() throws Exception {
+        Future<Void> opening = mCache.initAsync(RuntimeEnvironment.application, 10000l, false, false, 5000);
+        mCache.put("key", "value", 10000l);
+
+        assertThat(mCache.get("key", String.class)).isEqualTo("value");
+        assertThat(opening.isDone()).isTrue();
+        assertThat(mCache.getInitStats().getDiskOpenTimeNanos()).isGreaterThan(0);
+    }
+
+    @Test
+    public void shouldCloseWhileOpening() throws Exception {
+        Future<Void> opening = mCache.initAsync(RuntimeEnvironment.application, 10000l, false, false, 5000);
+
+        mCache.close();
+
+        assertThat(opening.isDone()).isTrue();
+        assertThat(mCache.getInitStats()).isNull();
+        // the cache opened meanwhile was closed, so its dir can be opened again
+        mCache.init(RuntimeEnvironment.application, 10000l);
+        mCache.put("key", "value", 10000l);
+        assertThat(mCache.get("key", String.class)).isEqualTo("value");
+    }
+}
@@ -0,0 +1,74 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Journal compaction, including DiskLruCache versions whose journal can't be reached.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class JournalCompactionTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldCompactJournal() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "compacted",
+                10000l).build();
+        try {
+            for (int i = 0; i < 20; i++) {
+                cache.put("key", "value");
+                cache.get("key", String.class);
+            }
+            JournalStats before = cache.getJournalStats();
+            assertThat(before.getRedundantOpCount()).isGreaterThan(0);
+
+            cache.compactJournal();
+
+            JournalStats after = cache.getJournalStats();
+            assertThat(after.getCompactionCount()).isEqualTo(1);
+            assertThat(after.getRedundantOpCount()).isEqualTo(0);
+            assertThat(after.getJournalBytes()).isLessThan(before.getJournalBytes());
+            assertThat(cache.get("key", String.class)).isEqualTo("value");
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldSkipCompactionWhenJournalCantBeReached() throws Exception {
+        File dir = mFolder.newFolder("journal");
+        SimpleDiskCache cache = SimpleDiskCache.open(dir, 1, 10000l);
+        try {
+            cache.disableCompaction();
+            for (int i = 0; i < 20; i++) {
+                cache.put("key", "value");
+            }
+            long journalBytes = cache.journalStats().getJournalBytes();
+
+            assertThat(cache.compact(1)).isEqualTo(0);
+
+            JournalStats stats = cache.journalStats();
+            assertThat(stats.getCompactionCount()).isEqualTo(0);
+            assertThat(stats.getRedundantOpCount()).isEqualTo(-1);
+            assertThat(stats.getJournalBytes()).isEqualTo(journalBytes);
+            assertThat(cache.getString("key").getString()).isEqualTo("value");
+        } finally {
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Key naming, and moving entries named by MD5 to the current naming.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class KeyHasherTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldHashKeysToFixedWidthLowercaseHex() {
+        assertThat(KeyHasher.MURMUR3.hash("")).matches("[0-9a-f]{32}");
+        for (int i = 0; i < 1000; i++) {
+            assertThat(KeyHasher.MURMUR3.hash("key" + i)).matches("[0-9a-f]{32}");
+        }
+    }
+
+    @Test
+    public void shouldOnlyListKeysOfEntries() throws Exception {
+        File dir = mFolder.newFolder("shared");
+        assertThat(new File(dir, "settings.1").createNewFile()).isTrue();
+        assertThat(new File(dir, "notes.0").createNewFile()).isTrue();
+        assertThat(new File(dir, "notes.1").createNewFile()).isTrue();
+        SimpleDiskCache cache = SimpleDiskCache.open(dir, 1, 10000l);
+        try {
+            cache.put("key", "value");
+
+            assertThat(cache.listInternalKeys()).containsOnly(cache.toInternalKey("key"));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldMoveMd5NamedEntriesWhenRead() throws Exception {
+        File dir = mFolder.newFolder("md5");
+        SimpleDiskCache cache = SimpleDiskCache.open(dir, 1, 10000l, 1, KeyHasher.MD5);
+        cache.put("first", "value1");
+        cache.put("second", "value2");
+        cache.close();
+
+        cache = SimpleDiskCache.open(dir, 1, 10000l);
+        cache.put("third", "value3");
+
+        assertThat(cache.getString("first").getString()).isEqualTo("value1");
+        assertThat(new File(dir, KeyHasher.MD5.hash("first") + ".0").exists()).isFalse();
+        assertThat(new File(dir, KeyHasher.MURMUR3.hash("first") + ".0").exists()).isTrue();
+        assertThat(new File(dir, SimpleDiskCache.KEYS_MARKER).exists()).isFalse();
+        cache.close();
+
+        // entries written under the new names since the upgrade don't count as legacy ones
+        cache = SimpleDiskCache.open(dir, 1, 10000l);
+        assertThat(cache.getString("second").getString()).isEqualTo("value2");
+        assertThat(new File(dir, SimpleDiskCache.KEYS_MARKER).exists()).isTrue();
+        assertThat(cache.getString("first").getString()).isEqualTo("value1");
+        assertThat(cache.getString("third").getString()).isEqualTo("value3");
+        cache.close();
+    }
+
+    @Test
+    public void shouldEndLegacyLookupsOnceMd5NamedEntriesAreRemoved() throws Exception {
+        File dir = mFolder.newFolder("removed");
+        SimpleDiskCache cache = SimpleDiskCache.open(dir, 1, 10000l, 1, KeyHasher.MD5);
+        cache.put("key", "value");
+        cache.close();
+
+        cache = SimpleDiskCache.open(dir, 1, 10000l);
+        assertThat(cache.contains("key")).isTrue();
+        assertThat(new File(dir, SimpleDiskCache.KEYS_MARKER).exists()).isFalse();
+
+        cache.remove("key");
+
+        assertThat(new File(dir, SimpleDiskCache.KEYS_MARKER).exists()).isTrue();
+        assertThat(cache.getString("key")).isNull();
+        cache.close();
+    }
+}
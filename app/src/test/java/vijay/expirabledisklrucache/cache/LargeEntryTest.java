@@ -0,0 +1,134 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+import vijay.expirabledisklrucache.cache.utils.ByteStreams;
+
+/**
+ * Values larger than the maximum entry size, and the large entry store they are moved to.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class LargeEntryTest {
+
+    private static final int CHUNK = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldSpillLargeEntries() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "spill",
+                3000l).setMaxEntrySize(1000, 10000).build();
+        char[] chars = new char[2000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        try {
+            cache.put("small", "value");
+            cache.put("large", large);
+
+            assertThat(cache.get("small", String.class)).isEqualTo("value");
+            assertThat(cache.get("large", String.class)).isEqualTo(large);
+
+            try {
+                cache.put("huge", new String(new char[20000]));
+                fail("Expected EntryTooLargeException");
+            } catch (EntryTooLargeException e) {
+                assertThat(e.getMaxSize()).isEqualTo(10000);
+            }
+            assertThat(cache.contains("huge")).isFalse();
+            assertThat(cache.getStats().getRejectionCount()).isEqualTo(1);
+
+            cache.put("large", "value");
+
+            assertThat(cache.get("large", String.class)).isEqualTo("value");
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldNotBufferValuesThatFit() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        SimpleDiskCache cache = SimpleDiskCache.open(mFolder.newFolder("fit"), 1, 64l * 1024 * 1024);
+        try {
+            cache.setMaxEntrySize(16 * 1024 * 1024, 64l * 1024 * 1024);
+            byte[] chunk = new byte[CHUNK];
+            // warm up, so the measured put doesn't count class loading
+            write(cache, "warm", chunk, 1);
+
+            long threadId = Thread.currentThread().getId();
+            long before = threads.getThreadAllocatedBytes(threadId);
+            write(cache, "key", chunk, 128);
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+            // 8 MB written
+            assertThat(allocated).isLessThan(512 * 1024);
+            assertThat(cache.getInputStream("key").getLength()).isEqualTo(128l * CHUNK);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldCopyWhatWasWrittenWhenSpilling() throws Exception {
+        assumeTrue(SimpleDiskCache.isSpillSupported());
+        File dir = mFolder.newFolder("spill");
+        SimpleDiskCache cache = SimpleDiskCache.open(dir, 1, 64l * 1024);
+        try {
+            cache.setMaxEntrySize(10 * 1024, 1024 * 1024);
+            byte[] chunk = new byte[CHUNK];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = (byte) i;
+            }
+            OutputStream out = cache.openStream("key");
+            // the first writes fit the home shard, the last one spills
+            out.write(chunk, 0, 3000);
+            out.write(chunk, 3000, 6000);
+            out.write(chunk, 9000, 20000);
+            out.close();
+
+            SimpleDiskCache.InputStreamEntry entry = cache.getInputStream("key");
+            InputStream in = entry.getInputStream();
+            try {
+                assertThat(ByteStreams.toByteArray(in)).isEqualTo(Arrays.copyOf(chunk, 29000));
+            } finally {
+                in.close();
+                entry.close();
+            }
+        } finally {
+            cache.close();
+        }
+    }
+
+    private static void write(SimpleDiskCache cache, String key, byte[] chunk, int chunks) throws Exception {
+        OutputStream out = cache.openStream(key);
+        try {
+            for (int i = 0; i < chunks; i++) {
+                out.write(chunk);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Gets that load missing values, and share the load with concurrent callers.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class LoaderTest {
+
+    @Test
+    public void shouldLoadOncePerKey() throws Exception {
+        final ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application,
+                "loaded", 10000l).build();
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExpirableDiskLruCache.Loader<String> loader = new ExpirableDiskLruCache.Loader<String>() {
+            @Override
+            public String load(String key) throws Exception {
+                loads.incrementAndGet();
+                started.countDown();
+                assertThat(release.await(10, TimeUnit.SECONDS)).isTrue();
+                return "value";
+            }
+        };
+        final AtomicReferenceArray<Object> results = new AtomicReferenceArray<>(4);
+        List<Thread> callers = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                final int caller = i;
+                callers.add(new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            results.set(caller, cache.get("key", String.class, loader, 10000l));
+                        } catch (Exception e) {
+                            results.set(caller, e);
+                        }
+                    }
+                });
+            }
+            for (Thread caller : callers) {
+                caller.start();
+            }
+            assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+            // the load is held until released, so every caller ends up parked loading or waiting for it
+            for (Thread caller : callers) {
+                awaitParked(caller);
+            }
+            release.countDown();
+            for (Thread caller : callers) {
+                caller.join(10000);
+            }
+
+            for (int i = 0; i < 4; i++) {
+                assertThat(results.get(i)).isEqualTo("value");
+            }
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(cache.get("key", String.class)).isEqualTo("value");
+        } finally {
+            release.countDown();
+            cache.removeAll();
+            cache.close();
+        }
+    }
+
+    private static void awaitParked(Thread thread) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Clock} that only moves when a test moves it.
+ */
+class ManualClock extends Clock {
+
+    private final AtomicLong mNow = new AtomicLong(System.currentTimeMillis());
+
+    @Override
+    long currentTimeMillis() {
+        return mNow.get();
+    }
+
+    void advance(long millis) {
+        mNow.addAndGet(millis);
+    }
+}
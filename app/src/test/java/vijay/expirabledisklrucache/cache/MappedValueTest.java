@@ -0,0 +1,77 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Reading values through a memory map, or a copy when they are small.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class MappedValueTest {
+
+    @Test
+    public void shouldMapLargeValues() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "mapped",
+                1024l * 1024).build();
+        byte[] large = new byte[256 * 1024];
+        new Random(42).nextBytes(large);
+        try {
+            cache.putBytes("large", large, 10000l);
+
+            MappedValue value = cache.getMappedValue("large");
+
+            assertThat(value.isMapped()).isTrue();
+            ByteBuffer buffer = value.getBuffer();
+            assertThat(buffer.isReadOnly()).isTrue();
+            byte[] read = new byte[buffer.remaining()];
+            buffer.get(read);
+            assertThat(read).isEqualTo(large);
+            value.close();
+            try {
+                value.getBuffer();
+                fail("Expected an IllegalStateException");
+            } catch (IllegalStateException e) {
+                // closed
+            }
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldCopySmallValuesForMappedReads() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "copied",
+                10000l).build();
+        byte[] small = new byte[] { 1, 2, 3 };
+        try {
+            cache.putBytes("small", small, 10000l);
+
+            MappedValue value = cache.getMappedValue("small");
+
+            assertThat(value.isMapped()).isFalse();
+            ByteBuffer buffer = value.getBuffer();
+            assertThat(buffer.isReadOnly()).isTrue();
+            byte[] read = new byte[buffer.remaining()];
+            buffer.get(read);
+            assertThat(read).isEqualTo(small);
+            value.close();
+            assertThat(cache.getMappedValue("missing")).isNull();
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.compression.Lz4Compressor;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * The in-memory tier in front of the disk cache.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class MemoryCacheTest {
+
+    @Test
+    public void shouldServeRepeatedGetsFromMemory() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "memory",
+                10000l).setMemoryCacheSize(1024).build();
+        try {
+            cache.put("key", "value");
+
+            assertThat(cache.get("key", String.class)).isEqualTo("value");
+            assertThat(cache.get("key", String.class)).isEqualTo("value");
+            assertThat(cache.getMemoryCacheHitCount()).isEqualTo(2);
+            assertThat(cache.getStats().getBytesRead()).isEqualTo(0);
+
+            cache.remove("key");
+
+            assertThat(cache.get("key", String.class)).isEqualTo(null);
+            assertThat(cache.getMemoryCacheMissCount()).isEqualTo(1);
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldSizeMemoryEntriesAlikeOnPutAndGet() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "sized",
+                100000l).setCompressor(new Lz4Compressor(), 512).setMemoryCacheSize(5000).build();
+        char[] chars = new char[3000];
+        Arrays.fill(chars, 'a');
+        String value = new String(chars);
+        try {
+            cache.put("first", value);
+            cache.put("second", value);
+
+            // compressed on disk, but filled from it at its serialized size which leaves no room for second
+            assertThat(cache.get("first", String.class)).isEqualTo(value);
+            assertThat(cache.get("second", String.class)).isEqualTo(value);
+            assertThat(cache.getMemoryCacheHitCount()).isEqualTo(0);
+            assertThat(cache.getMemoryCacheMissCount()).isEqualTo(2);
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
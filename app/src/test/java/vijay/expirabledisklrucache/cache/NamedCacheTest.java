@@ -0,0 +1,107 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Named caches built next to the shared instance, each with entries of its own.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class NamedCacheTest {
+
+    private final ExpirableDiskLruCache mShared = ExpirableDiskLruCache.getInstance();
+
+    @Before
+    public void setUp() throws Exception {
+        mShared.init(RuntimeEnvironment.application, 10000l);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mShared.removeAll();
+        mShared.close();
+    }
+
+    @Test
+    public void shouldKeepNamedCachesApart() throws Exception {
+        ExpirableDiskLruCache images = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "images",
+                10000l).build();
+        ExpirableDiskLruCache config = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "config",
+                10000l).build();
+        try {
+            images.put("key", "value");
+
+            assertThat(images.get("key", String.class)).isEqualTo("value");
+            assertThat(config.get("key", String.class)).isEqualTo(null);
+            assertThat(mShared.get("key", String.class)).isEqualTo(null);
+
+            images.close();
+            images = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "images", 10000l).build();
+
+            assertThat(images.get("key", String.class)).isEqualTo("value");
+        } finally {
+            images.removeAll();
+            images.close();
+            config.close();
+        }
+    }
+
+    @Test
+    public void shouldRunCallbacksOnTheirOwnCache() throws Exception {
+        ExpirableDiskLruCache config = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "config",
+                10000l).build();
+        final CountDownLatch put = new CountDownLatch(1);
+        final CountDownLatch got = new CountDownLatch(1);
+        final AtomicReference<Object> result = new AtomicReference<>();
+        try {
+            config.put("key", "value", 10000l, new ExpirableDiskLruCache.PutCallback() {
+                @Override
+                public void onSuccess() {
+                    put.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    result.set(e);
+                    put.countDown();
+                }
+            });
+            assertThat(put.await(5, TimeUnit.SECONDS)).isTrue();
+            config.get("key", String.class, new ExpirableDiskLruCache.GetCallback<String>() {
+                @Override
+                public void onSuccess(String value) {
+                    result.set(value);
+                    got.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    result.set(e);
+                    got.countDown();
+                }
+            });
+            assertThat(got.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(result.get()).isEqualTo("value");
+            assertThat(mShared.contains("key")).isFalse();
+            assertThat(mShared.get("key", String.class)).isEqualTo(null);
+        } finally {
+            config.removeAll();
+            config.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.serializer.BinarySerializer;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+import android.os.Process;
+
+/**
+ * Reloading entries in the background before they expire.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class RefreshAheadTest {
+
+    private static final ExpirableDiskLruCache.Loader<String> FRESH  = new ExpirableDiskLruCache.Loader<String>() {
+        @Override
+        public String load(String key) throws Exception {
+            return "fresh";
+        }
+    };
+
+    private final ManualClock                                 mClock = new ManualClock();
+
+    private ExpirableDiskLruCache                             mCache;
+
+    @Before
+    public void setUp() throws Exception {
+        Clock.set(mClock);
+        mCache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "refresh", 10000l).build();
+        // refreshes then run in order with the barrier of awaitRefreshes()
+        mCache.setAsyncExecutor(1, 16, Process.THREAD_PRIORITY_BACKGROUND);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Clock.set(Clock.SYSTEM);
+        mCache.removeAll();
+        mCache.close();
+    }
+
+    @Test
+    public void shouldRefreshAhead() throws Exception {
+        mCache.enableRefreshAhead(0.5, FRESH);
+
+        mCache.put("key", "value", 1000l);
+        assertThat(mCache.get("key", String.class)).isEqualTo("value");
+
+        mClock.advance(600);
+        assertThat(mCache.get("key", String.class)).isEqualTo("value");
+        awaitRefreshes();
+
+        mClock.advance(600);
+        assertThat(mCache.get("key", String.class)).isEqualTo("fresh");
+    }
+
+    @Test
+    public void shouldRefreshWithTheOriginalEntryOptions() throws Exception {
+        BinarySerializer serializer = new BinarySerializer();
+        mCache.enableRefreshAhead(0.5, FRESH);
+
+        mCache.put("key", "value", 1000l, serializer);
+        mClock.advance(600);
+        assertThat(mCache.get("key", String.class)).isEqualTo("value");
+        awaitRefreshes();
+        mCache.disableRefreshAhead();
+
+        assertThat(mCache.get("key", String.class)).isEqualTo("fresh");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize("fresh", out);
+        assertThat(mCache.getBytes("key")).isEqualTo(out.toByteArray());
+
+        mClock.advance(1100);
+        assertThat(mCache.get("key", String.class)).isEqualTo(null);
+    }
+
+    /**
+     * Waits for the refreshes started so far, which are queued ahead of this get on the single
+     * executor thread.
+     */
+    private void awaitRefreshes() throws Exception {
+        mCache.getAsync("barrier", String.class).get(10, TimeUnit.SECONDS);
+    }
+}
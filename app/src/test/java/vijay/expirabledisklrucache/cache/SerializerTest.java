@@ -0,0 +1,105 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.compression.Compressor;
+import vijay.expirabledisklrucache.cache.serializer.BinarySerializer;
+import vijay.expirabledisklrucache.cache.serializer.Serializer;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Values written and read with a serializer other than the default one.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class SerializerTest {
+
+    @Test
+    public void shouldPutAndGetWithBinarySerializer() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "binary",
+                10000l).build();
+        BinarySerializer serializer = new BinarySerializer();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize("value", out);
+        try {
+            cache.put("key", "value", 10000l, serializer);
+
+            assertThat(cache.get("key", String.class)).isEqualTo("value");
+            assertThat(cache.getBytes("key")).isEqualTo(out.toByteArray());
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldMissValuesWrittenWithAnotherSchema() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "schema",
+                10000l).build();
+        BinarySerializer serializer = new BinarySerializer();
+        Item item = new Item();
+        item.id = 42;
+        item.name = "item";
+        try {
+            cache.put("key", item, 10000l, serializer);
+            cache.put("other", item, 10000l, serializer);
+
+            Item read = cache.get("key", Item.class);
+            assertThat(read.id).isEqualTo(42);
+            assertThat(read.name).isEqualTo("item");
+            // the same fields and one more, as if Item had gained a field since it was cached
+            assertThat(cache.get("other", PricedItem.class)).isNull();
+            assertThat(cache.contains("other")).isFalse();
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldRejectSerializerAndCompressorIdsOutOfRange() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "ids",
+                10000l).build();
+        Serializer serializer = Mockito.mock(Serializer.class);
+        Mockito.when(serializer.getId()).thenReturn((byte) -1);
+        Compressor compressor = Mockito.mock(Compressor.class);
+        Mockito.when(compressor.getId()).thenReturn((byte) -1);
+        try {
+            try {
+                cache.put("key", "value", 10000l, serializer);
+                fail("Expected an IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // ids are stored in one byte of the metadata
+            }
+            try {
+                cache.setCompressor(compressor, 100);
+                fail("Expected an IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // ids are stored in one byte of the metadata
+            }
+        } finally {
+            cache.close();
+        }
+    }
+
+    private static class Item {
+        int    id;
+        String name;
+    }
+
+    private static class PricedItem {
+        int    id;
+        String name;
+        double price;
+    }
+}
@@ -0,0 +1,57 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FilenameFilter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+import android.content.Context;
+
+/**
+ * Caches split into independent shards.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class ShardTest {
+
+    @Test
+    public void shouldRouteEntriesToShardsAndReopenThem() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "sharded",
+                100000l).setShardCount(4).build();
+        try {
+            for (int i = 0; i < 20; i++) {
+                cache.put("key" + i, "value" + i);
+            }
+            File dir = RuntimeEnvironment.application.getDir("expirable_disk_cache_sharded", Context.MODE_PRIVATE);
+            for (int i = 0; i < 4; i++) {
+                String[] values = new File(dir, "shard-" + i).list(new FilenameFilter() {
+                    @Override
+                    public boolean accept(File dir, String name) {
+                        return name.endsWith(".0");
+                    }
+                });
+                assertThat(values).isNotEmpty();
+            }
+
+            cache.close();
+            cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "sharded", 100000l)
+                    .setShardCount(4).build();
+
+            for (int i = 0; i < 20; i++) {
+                assertThat(cache.contains("key" + i)).isTrue();
+                assertThat(cache.get("key" + i, String.class)).isEqualTo("value" + i);
+            }
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Sharing in-flight calls between callers of the same key and type.
+ */
+public class SingleFlightTest {
+
+    private final SingleFlight    mFlight   = new SingleFlight();
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void shouldNotShareCallsOfAnotherType() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<Object> string = mExecutor.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return mFlight.execute("key", String.class, new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        started.countDown();
+                        assertThat(release.await(10, TimeUnit.SECONDS)).isTrue();
+                        return "value";
+                    }
+                });
+            }
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // runs while the String call is in flight instead of waiting for its value
+        Object integer = mFlight.execute("key", Integer.class, new Callable<Object>() {
+            @Override
+            public Object call() {
+                return 1;
+            }
+        });
+        release.countDown();
+
+        assertThat(integer).isEqualTo(1);
+        assertThat(string.get(10, TimeUnit.SECONDS)).isEqualTo("value");
+    }
+
+    @Test
+    public void shouldShareCallsOfTheSameType() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final Callable<Object> load = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                calls.incrementAndGet();
+                started.countDown();
+                assertThat(release.await(10, TimeUnit.SECONDS)).isTrue();
+                return "value";
+            }
+        };
+        Future<Object> first = mExecutor.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return mFlight.execute("key", String.class, load);
+            }
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        final AtomicReference<Object> joined = new AtomicReference<>();
+        Thread second = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    joined.set(mFlight.execute("key", String.class, load));
+                } catch (Exception e) {
+                    joined.set(e);
+                }
+            }
+        };
+        second.start();
+        // parks only once it waits for the call in flight, which is held until released
+        while (second.getState() != Thread.State.WAITING) {
+            assertThat(second.isAlive()).isTrue();
+            Thread.yield();
+        }
+        release.countDown();
+        second.join(10000);
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo("value");
+        assertThat(joined.get()).isEqualTo("value");
+        assertThat(calls.get()).isEqualTo(1);
+    }
+}
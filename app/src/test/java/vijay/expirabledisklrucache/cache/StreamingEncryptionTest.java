@@ -0,0 +1,123 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.compression.Lz4Compressor;
+import vijay.expirabledisklrucache.cache.security.StreamingEncrypterDecrypter;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Values streamed through a {@link StreamingEncrypterDecrypter} instead of encrypted as arrays.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class StreamingEncryptionTest {
+
+    @Test
+    public void shouldEncryptStreamsThroughPutGetAndCompression() throws Exception {
+        XorEncrypterDecrypter xor = new XorEncrypterDecrypter();
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "streamed",
+                100000l).setEncrypterDecrypter(xor).build();
+        ExpirableDiskLruCache compressed = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application,
+                "streamed-compressed", 100000l).setEncrypterDecrypter(xor).setCompressor(new Lz4Compressor(), 512)
+                .build();
+        char[] chars = new char[3000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        try {
+            cache.put("key", "value");
+            compressed.put("key", large);
+
+            assertThat(cache.get("key", String.class)).isEqualTo("value");
+            assertThat(compressed.get("key", String.class)).isEqualTo(large);
+            assertThat(compressed.getCompressionStats().getCompressedCount()).isEqualTo(1);
+            assertThat(xor.mStreamCount.get()).isEqualTo(4);
+            assertThat(xor.mArrayCount.get()).isEqualTo(0);
+        } finally {
+            cache.removeAll();
+            cache.close();
+            compressed.removeAll();
+            compressed.close();
+        }
+    }
+
+    /**
+     * XORs every byte with the id's hash, and counts how values were passed to it.
+     */
+    private static class XorEncrypterDecrypter implements StreamingEncrypterDecrypter {
+
+        final AtomicInteger mStreamCount = new AtomicInteger();
+        final AtomicInteger mArrayCount  = new AtomicInteger();
+
+        @Override
+        public byte[] encrypt(byte[] data, String id) throws Exception {
+            mArrayCount.incrementAndGet();
+            return xor(data, id);
+        }
+
+        @Override
+        public byte[] decrypt(byte[] data, String id) throws Exception {
+            mArrayCount.incrementAndGet();
+            return xor(data, id);
+        }
+
+        @Override
+        public OutputStream getCipherOutputStream(OutputStream out, final String id) throws Exception {
+            mStreamCount.incrementAndGet();
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int oneByte) throws IOException {
+                    out.write(oneByte ^ id.hashCode());
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int count) throws IOException {
+                    out.write(xor(Arrays.copyOfRange(buffer, offset, offset + count), id));
+                }
+            };
+        }
+
+        @Override
+        public InputStream getCipherInputStream(InputStream in, final String id) throws Exception {
+            mStreamCount.incrementAndGet();
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int oneByte = in.read();
+                    return oneByte == -1 ? -1 : (oneByte ^ id.hashCode()) & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int count) throws IOException {
+                    int read = in.read(buffer, offset, count);
+                    for (int i = offset; i < offset + read; i++) {
+                        buffer[i] ^= id.hashCode();
+                    }
+                    return read;
+                }
+            };
+        }
+
+        private static byte[] xor(byte[] data, String id) {
+            byte[] result = new byte[data.length];
+            for (int i = 0; i < data.length; i++) {
+                result[i] = (byte) (data[i] ^ id.hashCode());
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package vijay.expirabledisklrucache.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import vijay.expirabledisklrucache.BuildConfig;
+import vijay.expirabledisklrucache.cache.serializer.ValueType;
+import vijay.expirabledisklrucache.cache.tests.CustomRobolectricRunner;
+
+/**
+ * Values read back as primitive and generic types.
+ */
+@RunWith(CustomRobolectricRunner.class)
+@Config(constants = BuildConfig.class)
+public class ValueTypeTest {
+
+    @Test
+    public void shouldGetValuesByPrimitiveClass() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "primitive",
+                10000l).setMemoryCacheSize(1024).build();
+        try {
+            cache.put("key", 42);
+
+            assertThat(cache.get("key", int.class)).isEqualTo(42);
+            assertThat(cache.getMemoryCacheHitCount()).isEqualTo(1);
+            cache.setMemoryCacheSize(0);
+            assertThat(cache.get("key", int.class)).isEqualTo(42);
+            assertThat(cache.get("loaded", int.class, new ExpirableDiskLruCache.Loader<Integer>() {
+                @Override
+                public Integer load(String key) throws Exception {
+                    return 7;
+                }
+            }, 10000l)).isEqualTo(7);
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldPutAndGetGenericTypes() throws Exception {
+        ExpirableDiskLruCache cache = new ExpirableDiskLruCache.Builder(RuntimeEnvironment.application, "generic",
+                100000l).build();
+        ValueType<List<String>> strings = new ValueType<List<String>>() {};
+        try {
+            cache.put("list", Arrays.asList("a", "b"), strings, 10000l);
+
+            assertThat(cache.get("list", strings)).containsExactly("a", "b");
+            assertThat(cache.get("list", strings)).containsExactly("a", "b");
+        } finally {
+            cache.removeAll();
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package vijay.expirabledisklrucache.cache.serializer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Values BinarySerializer can and can't read back.
+ */
+public class BinarySerializerTest {
+
+    private final BinarySerializer mSerializer = new BinarySerializer();
+
+    static class Counter {
+        Number count;
+    }
+
+    static class Label {
+        CharSequence text;
+    }
+
+    static class Tags {
+        List<String> tags;
+        Label        label;
+    }
+
+    @Test
+    public void shouldRejectAbstractFieldTypesOnWrite() throws Exception {
+        Counter counter = new Counter();
+        counter.count = 3;
+        assertRejected(counter, "java.lang.Number");
+    }
+
+    @Test
+    public void shouldRejectInterfaceFieldTypesOnWrite() throws Exception {
+        Label label = new Label();
+        label.text = "text";
+        assertRejected(label, "java.lang.CharSequence");
+    }
+
+    @Test
+    public void shouldRoundTripNullsAndCollectionsOfUnreadableTypes() throws Exception {
+        Tags tags = new Tags();
+        tags.tags = Arrays.asList("a", "b");
+        tags.label = new Label();
+
+        Tags read = roundTrip(tags, Tags.class);
+
+        assertThat(read.tags).containsExactly("a", "b");
+        assertThat(read.label.text).isNull();
+    }
+
+    private void assertRejected(Object value, String declaredType) {
+        try {
+            mSerializer.serialize(value, new ByteArrayOutputStream());
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).contains(declaredType);
+        }
+    }
+
+    private <T> T roundTrip(T value, Class<T> type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mSerializer.serialize(value, out);
+        return mSerializer.deserialize(new ByteArrayInputStream(out.toByteArray()), type);
+    }
+}
@@ -0,0 +1,87 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Replays a synthetic trace through {@link SimpleDiskCache} with and without the admission
+ * filter and prints the hit rates. Reads follow a Zipf distribution over a key space ten times
+ * the cache's capacity, interrupted by scans of keys that are read once, like a scroll through a
+ * feed. Every miss is followed by a put, as a cache-aside caller would do. Not a JMH benchmark,
+ * run its main().
+ */
+public final class AdmissionSimulation {
+
+    private static final int    CAPACITY      = 500;
+    private static final int    KEY_COUNT     = 10 * CAPACITY;
+    private static final int    VALUE_SIZE    = 1024;
+    private static final int    READS         = 200000;
+    private static final int    SCAN_INTERVAL = 10000;
+    private static final int    SCAN_LENGTH   = 2000;
+    private static final double ZIPF_EXPONENT = 0.9;
+
+    private AdmissionSimulation() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] trace = trace(new Random(42));
+        System.out.println("trace: " + READS + " reads over " + KEY_COUNT + " keys, zipf " + ZIPF_EXPONENT + ", "
+                + SCAN_LENGTH + " scanned keys every " + SCAN_INTERVAL + " reads, capacity " + CAPACITY
+                + " entries");
+        System.out.println("lru:             " + replay(trace, false));
+        System.out.println("lru + admission: " + replay(trace, true));
+    }
+
+    private static String replay(String[] trace, boolean admission) throws IOException {
+        File dir = File.createTempFile("admission-simulation", "");
+        dir.delete();
+        // entries take their value plus about a hundred bytes of metadata on disk
+        SimpleDiskCache cache = SimpleDiskCache.open(dir, 1, CAPACITY * (VALUE_SIZE + 100L));
+        CacheMetrics metrics = new CacheMetrics();
+        cache.setMetrics(metrics);
+        if (admission) {
+            cache.setAdmissionFilter(CAPACITY);
+        }
+        byte[] value = new byte[VALUE_SIZE];
+        long hits = 0;
+        try {
+            for (String key : trace) {
+                SimpleDiskCache.InputStreamEntry entry = cache.getInputStream(key);
+                if (entry != null) {
+                    entry.close();
+                    hits++;
+                } else {
+                    cache.put(key, value, new EntryMetadata(Long.MAX_VALUE));
+                }
+            }
+        } finally {
+            cache.clear();
+            cache.close();
+        }
+        CacheStats stats = metrics.snapshot();
+        return String.format("hit rate %.1f%%, %d writes, %d rejected", 100.0 * hits / trace.length,
+                stats.getPutCount(), stats.getRejectionCount());
+    }
+
+    private static String[] trace(Random random) {
+        double[] cumulative = new double[KEY_COUNT];
+        double total = 0;
+        for (int i = 0; i < KEY_COUNT; i++) {
+            total += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = total;
+        }
+        String[] trace = new String[READS];
+        int scanned = 0;
+        for (int i = 0; i < READS; i++) {
+            if (i % SCAN_INTERVAL >= SCAN_INTERVAL - SCAN_LENGTH) {
+                trace[i] = "scan" + scanned++;
+                continue;
+            }
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            trace[i] = "key" + (index < 0 ? -index - 1 : index);
+        }
+        return trace;
+    }
+}
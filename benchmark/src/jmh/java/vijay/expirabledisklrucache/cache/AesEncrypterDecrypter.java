@@ -0,0 +1,55 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import vijay.expirabledisklrucache.cache.security.EncrypterDecrypter;
+
+/**
+ * AES-GCM with the key as associated data, the same construction conceal uses, so encryption
+ * costs are representative without conceal's native library.
+ */
+class AesEncrypterDecrypter implements EncrypterDecrypter {
+
+    private static final Charset UTF_8     = Charset.forName("UTF-8");
+    static final int             IV_LENGTH = 12;
+    private static final int     TAG_BITS  = 128;
+
+    private final SecretKeySpec  mKey;
+    final SecureRandom           mRandom   = new SecureRandom();
+
+    AesEncrypterDecrypter() {
+        byte[] key = new byte[16];
+        mRandom.nextBytes(key);
+        mKey = new SecretKeySpec(key, "AES");
+    }
+
+    @Override
+    public byte[] encrypt(byte[] data, String id) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        mRandom.nextBytes(iv);
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE, iv, id);
+        byte[] out = Arrays.copyOf(iv, IV_LENGTH + cipher.getOutputSize(data.length));
+        cipher.doFinal(data, 0, data.length, out, IV_LENGTH);
+        return out;
+    }
+
+    @Override
+    public byte[] decrypt(byte[] data, String id) throws GeneralSecurityException {
+        Cipher cipher = cipher(Cipher.DECRYPT_MODE, Arrays.copyOf(data, IV_LENGTH), id);
+        return cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH);
+    }
+
+    Cipher cipher(int mode, byte[] iv, String id) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, mKey, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(id.getBytes(UTF_8));
+        return cipher;
+    }
+}
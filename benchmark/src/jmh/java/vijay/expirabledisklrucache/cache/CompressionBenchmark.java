@@ -0,0 +1,81 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import vijay.expirabledisklrucache.cache.compression.Compressor;
+import vijay.expirabledisklrucache.cache.compression.DeflateCompressor;
+import vijay.expirabledisklrucache.cache.compression.Lz4Compressor;
+import vijay.expirabledisklrucache.cache.serializer.GsonSerializer;
+import vijay.expirabledisklrucache.cache.utils.ByteStreams;
+
+/**
+ * CPU cost of compressing and decompressing a json response with each compressor. The compressed
+ * size, and so how many more entries fit in the same maxSize, is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompressionBenchmark {
+
+    @Param({ "lz4", "deflate" })
+    public String         compressor;
+
+    @Param({ "10", "1000" })
+    public int            items;
+
+    private Compressor    mCompressor;
+    private byte[]        mJson;
+    private byte[]        mCompressed;
+
+    @Setup
+    public void setUp() throws IOException {
+        mCompressor = "lz4".equals(compressor) ? new Lz4Compressor() : new DeflateCompressor();
+        SerializerBenchmark.Feed feed = new SerializerBenchmark.Feed();
+        feed.id = 42;
+        feed.title = "expirable disk lru cache";
+        feed.items = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            SerializerBenchmark.Item item = new SerializerBenchmark.Item();
+            item.id = i;
+            item.name = "item " + i;
+            item.price = i * 1.25;
+            item.available = i % 2 == 0;
+            feed.items.add(item);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GsonSerializer().serialize(feed, out);
+        mJson = out.toByteArray();
+        mCompressed = compress();
+        System.out.println(compressor + " bytes: " + mJson.length + " -> " + mCompressed.length + ", "
+                + String.format("%.1f", (double) mJson.length / mCompressed.length) + "x capacity");
+    }
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        return mCompressor.compress(mJson, 0, mJson.length);
+    }
+
+    @Benchmark
+    public byte[] decompress() throws IOException {
+        InputStream in = mCompressor.decompress(new ByteArrayInputStream(mCompressed));
+        try {
+            return ByteStreams.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+}
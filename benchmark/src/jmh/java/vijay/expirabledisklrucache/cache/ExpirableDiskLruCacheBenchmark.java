@@ -0,0 +1,121 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import android.content.Context;
+
+/**
+ * Hot paths of {@link ExpirableDiskLruCache} across value sizes, without encryption, with byte
+ * array encryption and with streaming encryption, and at different hit ratios. Encryption uses
+ * AES-GCM in place of conceal, which needs android.
+ *
+ * Remove is measured in the churn group, against a concurrent put that refills the keys. Run
+ * {@link #main} to repeat the suite with 1, 2, 4 and 8 threads, or pass -t to the jmh task.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExpirableDiskLruCacheBenchmark {
+
+    private static final long     EVICTION_TIME_SPAN = TimeUnit.DAYS.toMillis(1);
+
+    @Param({ "64", "4096", "65536" })
+    public int                    valueSize;
+
+    @Param({ "none", "bytes", "streams" })
+    public String                 encryption;
+
+    @Param({ "100", "50" })
+    public int                    hitPercent;
+
+    private final KeySpace        mKeys              = new KeySpace();
+    private File                  mDir;
+    private ExpirableDiskLruCache mCache;
+    private String                mValue;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random random = new Random();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("expirable-benchmark", "");
+        mDir.delete();
+        mDir.mkdirs();
+        mCache = ExpirableDiskLruCache.getInstance();
+        AesEncrypterDecrypter encrypterDecrypter = null;
+        if ("bytes".equals(encryption)) {
+            encrypterDecrypter = new AesEncrypterDecrypter();
+        } else if ("streams".equals(encryption)) {
+            encrypterDecrypter = new StreamingAesEncrypterDecrypter();
+        }
+        mCache.init(new Context(mDir), 512L * 1024 * 1024, false, encrypterDecrypter != null, encrypterDecrypter);
+        char[] value = new char[valueSize];
+        Arrays.fill(value, 'v');
+        mValue = new String(value);
+        for (int i = 0; i < KeySpace.SIZE; i++) {
+            mCache.put(mKeys.present(i), mValue, EVICTION_TIME_SPAN);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        mCache.removeAll();
+    }
+
+    @Benchmark
+    public void put(ThreadState state) throws Exception {
+        put(mKeys.present(state.random));
+    }
+
+    @Benchmark
+    public String get(ThreadState state) throws Exception {
+        return mCache.get(mKeys.next(state.random, hitPercent), String.class);
+    }
+
+    @Benchmark
+    public boolean contains(ThreadState state) throws IOException {
+        return mCache.contains(mKeys.next(state.random, hitPercent));
+    }
+
+    @Benchmark
+    @Group("churn")
+    public void churnPut(ThreadState state) throws Exception {
+        put(mKeys.present(state.random));
+    }
+
+    @Benchmark
+    @Group("churn")
+    public void churnRemove(ThreadState state) throws Exception {
+        mCache.remove(mKeys.next(state.random, hitPercent));
+    }
+
+    private void put(String key) throws Exception {
+        try {
+            mCache.put(key, mValue, EVICTION_TIME_SPAN);
+        } catch (IOException e) {
+            // another thread is writing the same key
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadScaling.run(ExpirableDiskLruCacheBenchmark.class, args);
+    }
+}
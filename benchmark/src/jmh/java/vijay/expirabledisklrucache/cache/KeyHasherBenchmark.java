@@ -0,0 +1,33 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of turning a key into its file name with each {@link KeyHasher}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyHasherBenchmark {
+
+    @Param({ "user:42:profile", "https://api.example.com/v1/feed?page=3&size=50&locale=en_US" })
+    public String key;
+
+    @Benchmark
+    public String md5() {
+        return KeyHasher.MD5.hash(key);
+    }
+
+    @Benchmark
+    public String murmur3() {
+        return KeyHasher.MURMUR3.hash(key);
+    }
+}
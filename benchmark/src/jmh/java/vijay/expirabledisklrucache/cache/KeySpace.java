@@ -0,0 +1,37 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.util.Random;
+
+/**
+ * Keys a benchmark is populated with and keys it never writes, drawn at a given hit ratio.
+ */
+final class KeySpace {
+
+    static final int       SIZE = 512;
+
+    private final String[] mPresent = new String[SIZE];
+    private final String[] mAbsent  = new String[SIZE];
+
+    KeySpace() {
+        for (int i = 0; i < SIZE; i++) {
+            mPresent[i] = "key" + i;
+            mAbsent[i] = "missing" + i;
+        }
+    }
+
+    String present(int i) {
+        return mPresent[i];
+    }
+
+    String present(Random random) {
+        return mPresent[random.nextInt(SIZE)];
+    }
+
+    /**
+     * A present key with probability hitPercent, otherwise an absent one.
+     */
+    String next(Random random, int hitPercent) {
+        String[] keys = random.nextInt(100) < hitPercent ? mPresent : mAbsent;
+        return keys[random.nextInt(SIZE)];
+    }
+}
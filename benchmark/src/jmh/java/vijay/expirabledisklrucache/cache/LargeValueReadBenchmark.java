@@ -0,0 +1,78 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import android.content.Context;
+
+/**
+ * Reading a large value and touching every byte of it, copied onto the heap with getByteBuffer or
+ * mapped with getMappedValue. The value file stays in the page cache, so this measures the
+ * copy rather than the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LargeValueReadBenchmark {
+
+    private static final String   KEY = "large";
+
+    @Param({ "1048576", "8388608" })
+    public int                    valueSize;
+
+    private File                  mDir;
+    private ExpirableDiskLruCache mCache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("large-value-benchmark", "");
+        mDir.delete();
+        mDir.mkdirs();
+        mCache = ExpirableDiskLruCache.getInstance();
+        mCache.init(new Context(mDir), 64L * 1024 * 1024, false);
+        byte[] value = new byte[valueSize];
+        new Random(42).nextBytes(value);
+        mCache.putBytes(KEY, value);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        mCache.removeAll();
+    }
+
+    @Benchmark
+    public long heap() throws Exception {
+        return sum(mCache.getByteBuffer(KEY));
+    }
+
+    @Benchmark
+    public long mapped() throws Exception {
+        MappedValue value = mCache.getMappedValue(KEY);
+        try {
+            return sum(value.getBuffer());
+        } finally {
+            value.close();
+        }
+    }
+
+    private static long sum(ByteBuffer buffer) {
+        long sum = 0;
+        while (buffer.remaining() >= 8) {
+            sum += buffer.getLong();
+        }
+        return sum;
+    }
+}
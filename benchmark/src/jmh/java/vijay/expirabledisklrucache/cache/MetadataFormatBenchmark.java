@@ -0,0 +1,118 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.jakewharton.disklrucache.DiskLruCache;
+
+/**
+ * Compares the compact {@link EntryMetadata} header with the java serialized map that was
+ * written before it. The metadata file sizes of both formats are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetadataFormatBenchmark {
+
+    private static final String COMPACT_KEY = "compact";
+    private static final String LEGACY_KEY  = "legacy";
+    private static final String VALUE       = "{\"id\":42,\"name\":\"expirable disk lru cache\"}";
+
+    private File                mDir;
+    private SimpleDiskCache     mCache;
+    private EntryMetadata       mMetadata;
+    private byte[]              mCompactBytes;
+    private byte[]              mLegacyBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("metadata-benchmark", "");
+        mDir.delete();
+        mCache = SimpleDiskCache.open(mDir, 1, 10 * 1024 * 1024);
+
+        long evictionTime = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        mMetadata = new EntryMetadata(evictionTime);
+        mCompactBytes = mMetadata.encode();
+        mLegacyBytes = legacyEncode(evictionTime);
+
+        // written behind the cache's back, so before its index is loaded by the first put
+        writeLegacyEntry(LEGACY_KEY, VALUE, mLegacyBytes);
+        mCache.put(COMPACT_KEY, VALUE, mMetadata);
+
+        System.out.println("metadata bytes: compact=" + mCompactBytes.length + " legacy=" + mLegacyBytes.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mCache.clear();
+    }
+
+    @Benchmark
+    public String getCompact() throws IOException {
+        return mCache.getString(COMPACT_KEY).getString();
+    }
+
+    @Benchmark
+    public String getLegacy() throws IOException {
+        return mCache.getString(LEGACY_KEY).getString();
+    }
+
+    @Benchmark
+    public byte[] encodeCompact() {
+        return mMetadata.encode();
+    }
+
+    @Benchmark
+    public byte[] encodeLegacy() throws IOException {
+        return legacyEncode(mMetadata.getEvictionTime());
+    }
+
+    @Benchmark
+    public EntryMetadata decodeCompact() throws IOException {
+        return EntryMetadata.decode(mCompactBytes);
+    }
+
+    @Benchmark
+    public EntryMetadata decodeLegacy() throws IOException {
+        return EntryMetadata.decode(mLegacyBytes);
+    }
+
+    private static byte[] legacyEncode(long evictionTime) throws IOException {
+        Map<String, Serializable> map = new HashMap<>(1);
+        map.put(EntryMetadata.LEGACY_EVICTION_TIME, evictionTime);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(map);
+        oos.close();
+        return bytes.toByteArray();
+    }
+
+    private void writeLegacyEntry(String key, String value, byte[] metadata) throws IOException {
+        String internalKey = mCache.toInternalKey(key);
+        DiskLruCache.Editor editor = mCache.getShard(internalKey).edit(internalKey);
+        OutputStream os = editor.newOutputStream(0);
+        os.write(value.getBytes("UTF-8"));
+        os.close();
+        os = editor.newOutputStream(1);
+        os.write(metadata);
+        os.close();
+        editor.commit();
+    }
+}
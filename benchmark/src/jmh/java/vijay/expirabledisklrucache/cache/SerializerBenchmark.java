@@ -0,0 +1,85 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import vijay.expirabledisklrucache.cache.serializer.BinarySerializer;
+import vijay.expirabledisklrucache.cache.serializer.GsonSerializer;
+import vijay.expirabledisklrucache.cache.serializer.Serializer;
+
+/**
+ * Compares encoding and decoding a typical response object with the json and binary serializers.
+ * The encoded size of each is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializerBenchmark {
+
+    @Param({ "gson", "binary" })
+    public String          serializer;
+
+    @Param({ "10", "1000" })
+    public int             items;
+
+    private Serializer     mSerializer;
+    private Feed           mFeed;
+    private byte[]         mBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        mSerializer = "gson".equals(serializer) ? new GsonSerializer() : new BinarySerializer();
+        mFeed = new Feed();
+        mFeed.id = 42;
+        mFeed.title = "expirable disk lru cache";
+        mFeed.items = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            Item item = new Item();
+            item.id = i;
+            item.name = "item " + i;
+            item.price = i * 1.25;
+            item.available = i % 2 == 0;
+            mFeed.items.add(item);
+        }
+        mBytes = encode();
+        System.out.println(serializer + " bytes: " + mBytes.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mSerializer.serialize(mFeed, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Feed decode() throws IOException {
+        return mSerializer.deserialize(new ByteArrayInputStream(mBytes), Feed.class);
+    }
+
+    public static class Feed {
+        long       id;
+        String     title;
+        List<Item> items;
+    }
+
+    public static class Item {
+        int     id;
+        String  name;
+        double  price;
+        boolean available;
+    }
+}
@@ -0,0 +1,96 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Mixed read/write load on a sharded cache from several threads. Run {@link #main} to measure
+ * every shard count with 1, 2, 4 and 8 threads, or pass -t to the jmh task for a single count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ShardScalingBenchmark {
+
+    private static final int KEYS          = 1024;
+    private static final int WRITE_PERCENT = 10;
+
+    @Param({ "1", "4", "8" })
+    public int               shards;
+
+    private File             mDir;
+    private SimpleDiskCache  mCache;
+    private byte[]           mValue;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random random = new Random();
+        final byte[] buffer = new byte[4096];
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("shard-benchmark", "");
+        mDir.delete();
+        mCache = SimpleDiskCache.open(mDir, 1, 64 * 1024 * 1024, shards);
+        mValue = new byte[1024];
+        new Random(42).nextBytes(mValue);
+        for (int i = 0; i < KEYS; i++) {
+            put("key" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mCache.clear();
+    }
+
+    @Benchmark
+    public int readMostly(ThreadState state) throws IOException {
+        String key = "key" + state.random.nextInt(KEYS);
+        if (state.random.nextInt(100) < WRITE_PERCENT) {
+            try {
+                put(key);
+            } catch (IOException e) {
+                // another thread is writing the same key
+            }
+            return 0;
+        }
+        SimpleDiskCache.InputStreamEntry entry = mCache.getInputStream(key);
+        if (entry == null) {
+            return -1;
+        }
+        try {
+            InputStream in = entry.getInputStream();
+            int total = 0;
+            for (int read; (read = in.read(state.buffer)) != -1;) {
+                total += read;
+            }
+            return total;
+        } finally {
+            entry.close();
+        }
+    }
+
+    private void put(String key) throws IOException {
+        mCache.put(key, mValue, new EntryMetadata(Long.MAX_VALUE));
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadScaling.run(ShardScalingBenchmark.class, args);
+    }
+}
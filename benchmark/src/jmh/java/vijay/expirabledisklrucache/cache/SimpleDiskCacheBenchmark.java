@@ -0,0 +1,116 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Hot paths of {@link SimpleDiskCache} on its own, without serialization or encryption, across
+ * value sizes and hit ratios. Remove is measured in the churn group, see
+ * {@link ExpirableDiskLruCacheBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SimpleDiskCacheBenchmark {
+
+    @Param({ "64", "4096", "65536" })
+    public int              valueSize;
+
+    @Param({ "100", "50" })
+    public int              hitPercent;
+
+    private final KeySpace  mKeys = new KeySpace();
+    private File            mDir;
+    private SimpleDiskCache mCache;
+    private byte[]          mValue;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random random = new Random();
+        final byte[] buffer = new byte[8192];
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("simple-benchmark", "");
+        mDir.delete();
+        mCache = SimpleDiskCache.open(mDir, 1, 512L * 1024 * 1024);
+        mValue = new byte[valueSize];
+        new Random(42).nextBytes(mValue);
+        for (int i = 0; i < KeySpace.SIZE; i++) {
+            put(mKeys.present(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mCache.clear();
+    }
+
+    @Benchmark
+    public void put(ThreadState state) throws IOException {
+        put(mKeys.present(state.random));
+    }
+
+    @Benchmark
+    public int get(ThreadState state) throws IOException {
+        SimpleDiskCache.InputStreamEntry entry = mCache.getInputStream(mKeys.next(state.random, hitPercent));
+        if (entry == null) {
+            return -1;
+        }
+        try {
+            InputStream in = entry.getInputStream();
+            int total = 0;
+            for (int read; (read = in.read(state.buffer)) != -1;) {
+                total += read;
+            }
+            return total;
+        } finally {
+            entry.close();
+        }
+    }
+
+    @Benchmark
+    public boolean contains(ThreadState state) throws IOException {
+        return mCache.contains(mKeys.next(state.random, hitPercent));
+    }
+
+    @Benchmark
+    @Group("churn")
+    public void churnPut(ThreadState state) throws IOException {
+        put(mKeys.present(state.random));
+    }
+
+    @Benchmark
+    @Group("churn")
+    public void churnRemove(ThreadState state) throws IOException {
+        mCache.remove(mKeys.next(state.random, hitPercent));
+    }
+
+    private void put(String key) throws IOException {
+        try {
+            mCache.put(key, mValue, new EntryMetadata(Long.MAX_VALUE));
+        } catch (IOException e) {
+            // another thread is writing the same key
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadScaling.run(SimpleDiskCacheBenchmark.class, args);
+    }
+}
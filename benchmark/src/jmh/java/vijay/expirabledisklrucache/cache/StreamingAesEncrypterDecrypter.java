@@ -0,0 +1,44 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+
+import vijay.expirabledisklrucache.cache.security.StreamingEncrypterDecrypter;
+
+/**
+ * {@link AesEncrypterDecrypter} with cipher streams, writing the same iv prefixed format.
+ *
+ * The JDK's GCM implementation holds back all plaintext until the tag is verified, so unlike
+ * conceal it doesn't decrypt in constant memory. Allocation measured on reads is not representative.
+ */
+final class StreamingAesEncrypterDecrypter extends AesEncrypterDecrypter implements StreamingEncrypterDecrypter {
+
+    @Override
+    public OutputStream getCipherOutputStream(OutputStream out, String id) throws GeneralSecurityException,
+            IOException {
+        byte[] iv = new byte[IV_LENGTH];
+        mRandom.nextBytes(iv);
+        out.write(iv);
+        return new CipherOutputStream(out, cipher(Cipher.ENCRYPT_MODE, iv, id));
+    }
+
+    @Override
+    public InputStream getCipherInputStream(InputStream in, String id) throws GeneralSecurityException,
+            IOException {
+        byte[] iv = new byte[IV_LENGTH];
+        for (int read = 0; read < IV_LENGTH;) {
+            int n = in.read(iv, read, IV_LENGTH - read);
+            if (n == -1) {
+                throw new IOException("Truncated ciphertext");
+            }
+            read += n;
+        }
+        return new CipherInputStream(in, cipher(Cipher.DECRYPT_MODE, iv, id));
+    }
+}
@@ -0,0 +1,32 @@
+package vijay.expirabledisklrucache.cache;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs a benchmark once per thread count, writing each run's results as json next to the
+ * working directory. Further jmh command line options can be passed in args.
+ */
+final class ThreadScaling {
+
+    static final int[] THREAD_COUNTS = { 1, 2, 4, 8 };
+
+    private ThreadScaling() {
+    }
+
+    static void run(Class<?> benchmark, String[] args) throws RunnerException, CommandLineOptionException {
+        for (int threads : THREAD_COUNTS) {
+            new Runner(new OptionsBuilder()
+                    .parent(new CommandLineOptions(args))
+                    .include(benchmark.getSimpleName())
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(benchmark.getSimpleName() + "-" + threads + "t.json")
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package vijay.expirabledisklrucache.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import vijay.expirabledisklrucache.cache.serializer.GsonSerializer;
+import vijay.expirabledisklrucache.cache.serializer.ValueType;
+
+/**
+ * Decoding a small value by class, which has Gson look up its adapter under a lock shared by all
+ * threads on every call, against decoding with a {@link ValueType} that keeps the adapter. The
+ * difference shows with more threads, run {@link #main} to repeat it with 1, 2, 4 and 8.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValueTypeBenchmark {
+
+    private static final ValueType<Item> ITEM = ValueType.of(Item.class);
+
+    private GsonSerializer               mSerializer;
+    private byte[]                       mBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        mSerializer = new GsonSerializer();
+        Item item = new Item();
+        item.id = 42;
+        item.name = "item 42";
+        item.price = 52.5;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mSerializer.serialize(item, out);
+        mBytes = out.toByteArray();
+    }
+
+    @Benchmark
+    public Item decodeByClass() throws IOException {
+        return mSerializer.deserialize(new ByteArrayInputStream(mBytes), Item.class);
+    }
+
+    @Benchmark
+    public Item decodeByValueType() throws IOException {
+        return mSerializer.deserialize(new ByteArrayInputStream(mBytes), ITEM);
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadScaling.run(ValueTypeBenchmark.class, args);
+    }
+
+    public static class Item {
+        int    id;
+        String name;
+        double price;
+    }
+}
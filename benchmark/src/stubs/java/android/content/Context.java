@@ -0,0 +1,27 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * JVM stand-in for the android class, only what the cache sources reference.
+ */
+public class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    private final File      mFilesDir;
+
+    public Context(File filesDir) {
+        mFilesDir = filesDir;
+    }
+
+    public File getFilesDir() {
+        return mFilesDir;
+    }
+
+    public File getDir(String name, int mode) {
+        File dir = new File(mFilesDir.getParentFile(), "app_" + name);
+        dir.mkdirs();
+        return dir;
+    }
+}
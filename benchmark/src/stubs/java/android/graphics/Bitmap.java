@@ -0,0 +1,49 @@
+package android.graphics;
+
+import java.io.OutputStream;
+
+/**
+ * JVM stand-in for the android class, only what the cache sources reference.
+ */
+public final class Bitmap {
+
+    public enum Config {
+        ALPHA_8, RGB_565, ARGB_4444, ARGB_8888
+    }
+
+    public enum CompressFormat {
+        JPEG, PNG, WEBP
+    }
+
+    public boolean compress(CompressFormat format, int quality, OutputStream stream) {
+        throw new UnsupportedOperationException("Bitmaps are not available on the jvm");
+    }
+
+    public int getWidth() {
+        throw new UnsupportedOperationException("Bitmaps are not available on the jvm");
+    }
+
+    public int getHeight() {
+        throw new UnsupportedOperationException("Bitmaps are not available on the jvm");
+    }
+
+    public int getRowBytes() {
+        throw new UnsupportedOperationException("Bitmaps are not available on the jvm");
+    }
+
+    public Config getConfig() {
+        throw new UnsupportedOperationException("Bitmaps are not available on the jvm");
+    }
+
+    public boolean isMutable() {
+        throw new UnsupportedOperationException("Bitmaps are not available on the jvm");
+    }
+
+    public boolean isRecycled() {
+        throw new UnsupportedOperationException("Bitmaps are not available on the jvm");
+    }
+
+    public void recycle() {
+        throw new UnsupportedOperationException("Bitmaps are not available on the jvm");
+    }
+}
@@ -0,0 +1,27 @@
+package android.graphics;
+
+import java.io.InputStream;
+
+/**
+ * JVM stand-in for the android class, only what the cache sources reference.
+ */
+public class BitmapFactory {
+
+    public static class Options {
+        public boolean       inJustDecodeBounds;
+        public boolean       inMutable;
+        public int           inSampleSize;
+        public Bitmap.Config inPreferredConfig = Bitmap.Config.ARGB_8888;
+        public Bitmap        inBitmap;
+        public int           outWidth;
+        public int           outHeight;
+    }
+
+    public static Bitmap decodeStream(InputStream is) {
+        throw new UnsupportedOperationException("Bitmaps are not available on the jvm");
+    }
+
+    public static Bitmap decodeByteArray(byte[] data, int offset, int length, Options opts) {
+        throw new UnsupportedOperationException("Bitmaps are not available on the jvm");
+    }
+}
@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * JVM stand-in for the android class, only what the cache sources reference.
+ */
+public class Build {
+
+    public static class VERSION {
+        public static final int SDK_INT = 21;
+    }
+
+    public static class VERSION_CODES {
+        public static final int HONEYCOMB = 11;
+        public static final int KITKAT    = 19;
+    }
+}
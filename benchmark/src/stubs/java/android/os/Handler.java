@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * JVM stand-in for the android class, only what the cache sources reference.
+ */
+public class Handler {
+
+    public Handler(Looper looper) {
+    }
+
+    /**
+     * There is no main thread on the jvm, runs r right away.
+     */
+    public boolean post(Runnable r) {
+        r.run();
+        return true;
+    }
+}
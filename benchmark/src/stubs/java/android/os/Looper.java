@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * JVM stand-in for the android class, only what the cache sources reference.
+ */
+public final class Looper {
+
+    private static final Looper sMainLooper = new Looper();
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return sMainLooper;
+    }
+}
@@ -0,0 +1,13 @@
+package android.os;
+
+/**
+ * JVM stand-in for the android class, only what the cache sources reference.
+ */
+public class Process {
+
+    public static final int THREAD_PRIORITY_DEFAULT    = 0;
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    public static void setThreadPriority(int priority) {
+    }
+}
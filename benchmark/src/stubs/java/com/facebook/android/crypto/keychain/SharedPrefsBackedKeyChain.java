@@ -0,0 +1,14 @@
+package com.facebook.android.crypto.keychain;
+
+import android.content.Context;
+
+import com.facebook.crypto.keychain.KeyChain;
+
+/**
+ * JVM stand-in for the conceal class, only what the cache sources reference.
+ */
+public class SharedPrefsBackedKeyChain implements KeyChain {
+
+    public SharedPrefsBackedKeyChain(Context context) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.facebook.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.facebook.crypto.exception.CryptoInitializationException;
+import com.facebook.crypto.exception.KeyChainException;
+import com.facebook.crypto.keychain.KeyChain;
+import com.facebook.crypto.util.NativeCryptoLibrary;
+
+/**
+ * JVM stand-in for the conceal class. Conceal's native library is not available on the jvm, so
+ * it always reports itself unavailable.
+ */
+public class Crypto {
+
+    public Crypto(KeyChain keyChain, NativeCryptoLibrary nativeCryptoLibrary) {
+    }
+
+    public boolean isAvailable() {
+        return false;
+    }
+
+    public byte[] encrypt(byte[] data, Entity entity) throws KeyChainException, CryptoInitializationException,
+            IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    public byte[] decrypt(byte[] data, Entity entity) throws KeyChainException, CryptoInitializationException,
+            IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    public OutputStream getCipherOutputStream(OutputStream out, Entity entity) throws IOException,
+            CryptoInitializationException, KeyChainException {
+        throw new UnsupportedOperationException();
+    }
+
+    public InputStream getCipherInputStream(InputStream in, Entity entity) throws IOException,
+            CryptoInitializationException, KeyChainException {
+        throw new UnsupportedOperationException();
+    }
+}
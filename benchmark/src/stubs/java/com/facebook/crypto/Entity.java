@@ -0,0 +1,10 @@
+package com.facebook.crypto;
+
+/**
+ * JVM stand-in for the conceal class, only what the cache sources reference.
+ */
+public class Entity {
+
+    public Entity(String name) {
+    }
+}
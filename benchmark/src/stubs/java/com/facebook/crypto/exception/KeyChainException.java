@@ -0,0 +1,11 @@
+package com.facebook.crypto.exception;
+
+/**
+ * JVM stand-in for the conceal class, only what the cache sources reference.
+ */
+public class KeyChainException extends Exception {
+
+    public KeyChainException(String message) {
+        super(message);
+    }
+}
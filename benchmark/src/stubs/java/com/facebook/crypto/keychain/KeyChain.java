@@ -0,0 +1,7 @@
+package com.facebook.crypto.keychain;
+
+/**
+ * JVM stand-in for the conceal class, only what the cache sources reference.
+ */
+public interface KeyChain {
+}
@@ -0,0 +1,7 @@
+package com.facebook.crypto.util;
+
+/**
+ * JVM stand-in for the conceal class, only what the cache sources reference.
+ */
+public interface NativeCryptoLibrary {
+}